@@ -0,0 +1,79 @@
+package com.craftinginterpreters.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.craftinginterpreters.lox.CompiledScript;
+import com.craftinginterpreters.lox.LoxEngine;
+
+/**
+ * Message throughput between two isolates.
+ * Streaming: the parent posts every message and then waits for one reply from the echo isolate, which only counts them.
+ * Ping-pong: the parent waits for each echo before posting the next message, so every message is a round trip
+ * with a thread hand-off each way.
+ *
+ * Usage: IsolateMessaging [messages per run, default 100000] [runs, default 5]
+ */
+public class IsolateMessaging {
+	//counts messages until nil, then reports the count back
+	private static final String SINK =
+			"var count = 0;" +
+			"while (message() != nil) count = count + 1;" +
+			"post(parent, count);";
+
+	//sends every message straight back until nil
+	private static final String ECHO =
+			"var m = message();" +
+			"while (m != nil) { post(parent, m); m = message(); }";
+
+	public static void main(String[] args) throws IOException {
+		int messages = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		Path sink = script("sink", SINK);
+		Path echo = script("echo", ECHO);
+		LoxEngine engine = new LoxEngine();
+		CompiledScript streaming = engine.compile(
+				"var sink = isolate(\"" + escape(sink) + "\");" +
+				"for (var i = 0; i < " + messages + "; i = i + 1) post(sink, i);" +
+				"post(sink, nil);" +
+				"if (message() != " + messages + ") print \"lost messages\";" +
+				"join(sink);");
+		CompiledScript pingPong = engine.compile(
+				"var echo = isolate(\"" + escape(echo) + "\");" +
+				"for (var i = 0; i < " + messages + "; i = i + 1) { post(echo, i); if (message() != i) print \"out of order\"; }" +
+				"post(echo, nil);" +
+				"join(echo);");
+
+		System.out.println(messages + " messages per run");
+		System.out.println("run   streaming msg/s   ping-pong round trips/s");
+		for (int run = 1; run <= runs; run++) {//the first runs include JIT warm-up
+			System.out.printf("%3d %17.0f %25.0f%n", run, messages / time(streaming), messages / time(pingPong));
+		}
+
+		Files.deleteIfExists(sink);
+		Files.deleteIfExists(echo);
+	}
+
+	private static Path script(String name, String source) throws IOException {
+		Path file = Files.createTempFile("isolate-" + name, ".lox");
+		Files.writeString(file, source);
+		file.toFile().deleteOnExit();
+		return file;
+	}
+
+	//Lox strings have no escapes, so the path can't contain a quote
+	private static String escape(Path file) {
+		String path = file.toAbsolutePath().toString();
+		if (path.indexOf('"') >= 0) throw new IllegalArgumentException("Temporary directory path contains a quote: " + path);
+		return path;
+	}
+
+	//seconds for one run
+	private static double time(CompiledScript script) {
+		long start = System.nanoTime();
+		if (!script.run(System.out, System.err)) throw new IllegalStateException("Benchmark script failed.");
+		return (System.nanoTime() - start) / 1e9;
+	}
+}
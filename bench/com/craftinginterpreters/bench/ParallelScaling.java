@@ -0,0 +1,120 @@
+package com.craftinginterpreters.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.craftinginterpreters.lox.CompileError;
+import com.craftinginterpreters.lox.CompiledScript;
+import com.craftinginterpreters.lox.LoxEngine;
+
+/**
+ * Throughput of independent interpreters running side by side, from 1 thread up to one per core.
+ * Every program in the directory is compiled once, then each thread runs them round robin, each run in a fresh Interpreter,
+ * all sharing the same CompiledScripts. Near-linear speedup means nothing is shared that shouldn't be.
+ *
+ * Usage: ParallelScaling [directory, default test_files] [seconds per step, default 5]
+ * Programs with compile errors are skipped, as are programs taking longer than a second to run once.
+ */
+public class ParallelScaling {
+	private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Path directory = Paths.get(args.length > 0 ? args[0] : "test_files");
+		double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+
+		List<CompiledScript> programs = load(directory);
+		if (programs.isEmpty()) {
+			System.err.println("No runnable programs in " + directory + ".");
+			System.exit(66);
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println(programs.size() + " programs, " + cores + " cores, " + seconds + "s per step");
+		System.out.println("threads      runs/s   speedup  efficiency");
+
+		measure(programs, 1, seconds);//warm up, so the single threaded baseline is not measuring the JIT
+		double single = 0;
+		for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+			double throughput = measure(programs, threads, seconds);
+			if (threads == 1) single = throughput;
+			System.out.printf("%7d %11.1f %9.2f %10.0f%%%n", threads, throughput, throughput / single, 100 * throughput / single / threads);
+			if (threads == cores) break;
+		}
+	}
+
+	private static List<CompiledScript> load(Path directory) throws IOException {
+		LoxEngine engine = new LoxEngine();
+		List<CompiledScript> programs = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				if (!Files.isRegularFile(file) || file.toString().endsWith(".loxc")) continue;
+				CompiledScript program;
+				try {
+					program = engine.compile(Files.readString(file));
+				} catch (CompileError error) {
+					System.out.println("skipping " + file.getFileName() + ", does not compile");
+					continue;
+				}
+
+				long start = System.nanoTime();
+				boolean ok = program.run(DISCARD, DISCARD);
+				long elapsed = System.nanoTime() - start;
+				if (!ok || elapsed > 1_000_000_000L) {
+					System.out.println("skipping " + file.getFileName() + (ok ? ", takes over a second" : ", runtime error"));
+					continue;
+				}
+				programs.add(program);
+			}
+		}
+		return programs;
+	}
+
+	//runs/s over all threads
+	private static double measure(List<CompiledScript> programs, int threads, double seconds) throws InterruptedException {
+		long[] runs = new long[threads];
+		CountDownLatch start = new CountDownLatch(1);
+		long[] deadline = new long[1];
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int id = t;
+			Thread worker = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				long count = 0;
+				int next = id;//stagger the threads across the programs
+				while (System.nanoTime() < deadline[0]) {
+					programs.get(next++ % programs.size()).run(DISCARD, DISCARD);
+					count++;
+				}
+				runs[id] = count;
+			});
+			worker.start();
+			workers.add(worker);
+		}
+
+		long begin = System.nanoTime();
+		deadline[0] = begin + (long)(seconds * 1e9);
+		start.countDown();//the latch publishes the deadline to the workers
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double elapsed = (System.nanoTime() - begin) / 1e9;
+
+		long total = 0;
+		for (long count : runs) {
+			total += count;
+		}
+		return total / elapsed;
+	}
+}
@@ -0,0 +1,226 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Runs the Lox benchmark corpus in bench/lox and compares it with a stored baseline.
+ * Every program is compiled once, run a number of warmup iterations in-process, then measured:
+ * each iteration runs the whole program in a fresh Interpreter, timing it and counting the bytes the thread allocated.
+ * A program that fails at runtime stops the runner.
+ *
+ * The warmup iterations, at least one, keep what the program prints and check its CRC-32 against the expected file,
+ * bench/lox/expected.txt, a line per program with its name and checksum, so a change that makes a program faster by
+ * making it wrong fails instead of showing up as a speedup. Measured iterations discard the output, so printing costs
+ * them nothing. --save-expected writes the checksums of this run's output as the expected file, for a new program.
+ *
+ * The baseline file has a line per program: name, median milliseconds and bytes allocated per iteration.
+ * A program more than the threshold slower, or allocating more than the threshold more, than its baseline is a regression,
+ * and the runner exits with 1 after printing all of them.
+ *
+ * Usage: CorpusRunner [--warmup n, default 5] [--iterations n, default 10] [--threshold percent, default 10]
+ *                     [--baseline file, default bench/lox/baseline.txt] [--save]
+ *                     [--expected file, default bench/lox/expected.txt] [--save-expected] [directory, default bench/lox]
+ * --save writes this run's results as the new baseline instead of comparing.
+ */
+public class CorpusRunner {
+	public static void main(String[] args) throws IOException {
+		int warmup = 5;
+		int iterations = 10;
+		double threshold = 10;
+		Path baselineFile = Paths.get("bench", "lox", "baseline.txt");
+		boolean save = false;
+		Path expectedFile = Paths.get("bench", "lox", "expected.txt");
+		boolean saveExpected = false;
+		Path directory = Paths.get("bench", "lox");
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--warmup") && i + 1 < args.length) {
+				warmup = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--iterations") && i + 1 < args.length) {
+				iterations = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--threshold") && i + 1 < args.length) {
+				threshold = Double.parseDouble(args[++i]);
+			} else if (args[i].equals("--baseline") && i + 1 < args.length) {
+				baselineFile = Paths.get(args[++i]);
+			} else if (args[i].equals("--save")) {
+				save = true;
+			} else if (args[i].equals("--expected") && i + 1 < args.length) {
+				expectedFile = Paths.get(args[++i]);
+			} else if (args[i].equals("--save-expected")) {
+				saveExpected = true;
+			} else {
+				directory = Paths.get(args[i]);
+			}
+		}
+
+		Map<String, double[]> baseline = save ? new HashMap<>() : readBaseline(baselineFile);
+		Map<String, String> expected = saveExpected ? new HashMap<>() : readExpected(expectedFile);
+		Map<String, String> checksums = new HashMap<>();
+		Map<String, double[]> results = new HashMap<>();
+		List<String> regressions = new ArrayList<>();
+		System.out.printf("%-22s %10s %10s %14s %10s %10s%n", "program", "median ms", "min ms", "alloc B/iter", "time", "alloc");
+		for (Path file : programs(directory)) {
+			String name = file.getFileName().toString().replaceFirst("\\.lox$", "");
+			List<Stmt> program = Lox.compile(Files.readString(file), new ErrorReporter(System.err), false);
+			if (program == null) {
+				System.err.println(name + " does not compile.");
+				System.exit(65);
+			}
+
+			boolean usesTasks = TaskUse.direct(program);
+			for (int i = 0; i < Math.max(1, warmup); i++) {
+				String checksum = checksum(run(name, program, usesTasks, true));
+				String wanted = saveExpected ? checksums.putIfAbsent(name, checksum) : expected.get(name);
+				if (wanted == null && !saveExpected) {
+					System.err.println("No expected output checksum for " + name + " in " + expectedFile + ", run with --save-expected to record it.");
+					System.exit(1);
+				}
+				if (wanted != null && !wanted.equals(checksum)) {
+					System.err.println(name + " printed the wrong output, checksum " + checksum + " where " + wanted + " was expected.");
+					System.exit(1);
+				}
+			}
+			double[] millis = new double[iterations];
+			long allocated = 0;
+			for (int i = 0; i < iterations; i++) {
+				long bytesBefore = Measurement.allocatedBytes();
+				long start = System.nanoTime();
+				run(name, program, usesTasks, false);
+				millis[i] = (System.nanoTime() - start) / 1e6;
+				allocated += Measurement.allocatedBytes() - bytesBefore;
+			}
+			Arrays.sort(millis);
+			double median = millis[iterations / 2];
+			double bytes = (double)allocated / iterations;
+			results.put(name, new double[] {median, bytes});
+
+			double[] before = baseline.get(name);
+			String timeChange = "", allocChange = "";
+			if (before != null) {
+				double timeDelta = 100 * (median / before[0] - 1);
+				double allocDelta = before[1] == 0 ? 0 : 100 * (bytes / before[1] - 1);
+				timeChange = String.format("%+.1f%%", timeDelta);
+				allocChange = String.format("%+.1f%%", allocDelta);
+				if (timeDelta > threshold) regressions.add(name + " time " + timeChange);
+				if (allocDelta > threshold) regressions.add(name + " allocation " + allocChange);
+			}
+			System.out.printf("%-22s %10.2f %10.2f %14.0f %10s %10s%n", name, median, millis[0], bytes, timeChange, allocChange);
+		}
+
+		if (saveExpected) {
+			writeExpected(expectedFile, checksums);
+			System.out.println("expected output checksums written to " + expectedFile);
+		}
+		if (save) {
+			writeBaseline(baselineFile, results);
+			System.out.println("baseline written to " + baselineFile);
+			return;
+		}
+		if (baseline.isEmpty()) {
+			System.out.println("no baseline at " + baselineFile + ", run with --save to make one");
+			return;
+		}
+		if (!regressions.isEmpty()) {
+			System.out.println(regressions.size() + " regressions over " + threshold + "%:");
+			for (String regression : regressions) {
+				System.out.println("  " + regression);
+			}
+			System.exit(1);
+		}
+		System.out.println("no regressions over " + threshold + "%");
+	}
+
+	private static List<Path> programs(Path directory) throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.lox")) {
+			for (Path file : stream) {
+				files.add(file);
+			}
+		}
+		files.sort(null);
+		return files;
+	}
+
+	//the way jlox runs a script, single-threaded unless it can start tasks.
+	//Returns what it printed when keepOutput is set, null otherwise
+	private static byte[] run(String name, List<Stmt> program, boolean usesTasks, boolean keepOutput) {
+		ByteArrayOutputStream printed = keepOutput ? new ByteArrayOutputStream() : null;
+		OutputSink out = keepOutput ? OutputSink.of(printed) : OutputSink.discard();
+		ErrorReporter reporter = new ErrorReporter(System.err);
+		Interpreter interpreter = new Interpreter(out, reporter);
+		if (!usesTasks) interpreter.runSingleThreaded();
+		interpreter.interpret(program);
+		out.flush();
+		if (reporter.hadRuntimeError) {
+			System.err.println(name + " failed.");
+			System.exit(70);
+		}
+		return keepOutput ? printed.toByteArray() : null;
+	}
+
+	//CRC-32 of the output with \n line ends, so the expected file holds on any platform
+	private static String checksum(byte[] output) {
+		CRC32 crc = new CRC32();
+		crc.update(new String(output, StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n").getBytes(StandardCharsets.UTF_8));
+		return String.format("%08x", crc.getValue());
+	}
+
+	//name -> checksum, empty when there is no file
+	private static Map<String, String> readExpected(Path file) throws IOException {
+		Map<String, String> expected = new HashMap<>();
+		if (!Files.exists(file)) return expected;
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			if (line.isBlank() || line.startsWith("#")) continue;
+			String[] parts = line.trim().split("\\s+");
+			expected.put(parts[0], parts[1]);
+		}
+		return expected;
+	}
+
+	private static void writeExpected(Path file, Map<String, String> checksums) throws IOException {
+		List<String> names = new ArrayList<>(checksums.keySet());
+		names.sort(null);
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write("# program, CRC-32 of what it prints, written by CorpusRunner --save-expected\n");
+			for (String name : names) {
+				out.write(name + " " + checksums.get(name) + "\n");
+			}
+		}
+	}
+
+	//name -> {median ms, bytes}, empty when there is no file
+	private static Map<String, double[]> readBaseline(Path file) throws IOException {
+		Map<String, double[]> baseline = new HashMap<>();
+		if (!Files.exists(file)) return baseline;
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			if (line.isBlank() || line.startsWith("#")) continue;
+			String[] parts = line.trim().split("\\s+");
+			baseline.put(parts[0], new double[] {Double.parseDouble(parts[1]), Double.parseDouble(parts[2])});
+		}
+		return baseline;
+	}
+
+	private static void writeBaseline(Path file, Map<String, double[]> results) throws IOException {
+		List<String> names = new ArrayList<>(results.keySet());
+		names.sort(null);
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write("# program, median ms, bytes allocated per iteration, written by CorpusRunner --save\n");
+			for (String name : names) {
+				double[] result = results.get(name);
+				out.write(String.format("%s %.3f %.0f%n", name, result[0], result[1]));
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * How the Scanner, Parser and Resolver scale with program size. For each shape, programs from ProgramGenerator
+ * double in size from the smallest to the largest line count, and each stage is timed on its own, best of a few runs,
+ * and reported as lines and megabytes of source per second. Throughput that drops as programs grow is a scaling problem.
+ * Peak heap is the highest heap use, summed over the heap pools, during one scan, parse and resolve after a GC,
+ * with the source, tokens and tree all live at the end.
+ *
+ * Usage: FrontEndScaling [--shape name, default all] [--from lines, default 1000] [--to lines, default 64000] [--runs n, default 5]
+ */
+public class FrontEndScaling {
+	public static void main(String[] args) {
+		String only = null;
+		int from = 1000, to = 64_000, runs = 5;
+		for (int i = 0; i < args.length - 1; i += 2) {
+			switch (args[i]) {
+				case "--shape": only = args[i + 1]; break;
+				case "--from": from = Integer.parseInt(args[i + 1]); break;
+				case "--to": to = Integer.parseInt(args[i + 1]); break;
+				case "--runs": runs = Integer.parseInt(args[i + 1]); break;
+				default: throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+			}
+		}
+
+		System.out.printf("%-12s %8s %10s %9s %13s %13s %13s %10s %9s%n", "shape", "lines", "bytes", "tokens",
+				"scan lines/s", "parse lines/s", "resolve l/s", "all MB/s", "peak MB");
+		for (String shape : ProgramGenerator.SHAPES) {
+			if (only != null && !only.equals(shape)) continue;
+			for (int lines = from; lines <= to; lines *= 2) {
+				measure(shape, lines, runs);
+			}
+		}
+	}
+
+	private static void measure(String shape, int targetLines, int runs) {
+		String source = new ProgramGenerator(shape, 1).generate(targetLines);
+		long lines = source.chars().filter(c -> c == '\n').count();
+		long bytes = source.getBytes(StandardCharsets.UTF_8).length;
+
+		long scan = Long.MAX_VALUE, parse = Long.MAX_VALUE, resolve = Long.MAX_VALUE;
+		List<Token> tokens = null;
+		for (int run = 0; run < runs; run++) {
+			ErrorReporter reporter = new ErrorReporter(System.err);
+			long start = System.nanoTime();
+			tokens = new Scanner(source, reporter).scanTokens();
+			long scanned = System.nanoTime();
+			List<Stmt> statements = new Parser(tokens, reporter).parse();
+			long parsed = System.nanoTime();
+			new Resolver(reporter).resolve(statements);
+			long resolved = System.nanoTime();
+			if (reporter.hadError) throw new IllegalStateException("The generated " + shape + " program has errors.");
+			scan = Math.min(scan, scanned - start);
+			parse = Math.min(parse, parsed - scanned);
+			resolve = Math.min(resolve, resolved - parsed);
+		}
+
+		System.out.printf("%-12s %8d %10d %9d %13.0f %13.0f %13.0f %10.1f %9.1f%n", shape, lines, bytes, tokens.size(),
+				lines / (scan / 1e9), lines / (parse / 1e9), lines / (resolve / 1e9),
+				bytes / 1e6 / ((scan + parse + resolve) / 1e9), peakHeap(source) / 1e6);
+	}
+
+	//the peak heap use of one front-end pass
+	private static long peakHeap(String source) {
+		List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+		System.gc();
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+		}
+		ErrorReporter reporter = new ErrorReporter(System.err);
+		List<Token> tokens = new Scanner(source, reporter).scanTokens();
+		List<Stmt> statements = new Parser(tokens, reporter).parse();
+		new Resolver(reporter).resolve(statements);
+		long peak = 0;
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+		}
+		Measurement.sink = statements;//live until here
+		return peak;
+	}
+}
@@ -0,0 +1,22 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * What the hand-rolled harnesses here share. Per-stage timings are JMH's, see jmh/.
+ * Allocation is the bytes the benchmark thread allocated, from com.sun.management.ThreadMXBean,
+ * the same figure JMH's gc profiler reports as gc.alloc.rate.norm.
+ */
+final class Measurement {
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	static volatile Object sink;//where results go, so the JIT can't drop them as dead code
+
+	private Measurement() {}
+
+	/**
+	 * Bytes allocated by the current thread so far
+	 */
+	static long allocatedBytes() {
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().threadId());
+	}
+}
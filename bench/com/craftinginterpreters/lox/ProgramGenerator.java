@@ -0,0 +1,181 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes syntactically valid, resolvable Lox programs of a given size and shape, for front-end scaling tests.
+ * Shapes:
+ *   classes - many classes, each with an initializer, fields and methods, most inheriting from the one before
+ *   nesting - functions whose bodies nest blocks, ifs and whiles depth levels deep
+ *   expressions - globals initialized by long expression chains, terms terms each
+ *   strings - globals holding string literals of stringLength characters
+ *   mixed - the four in turn
+ * The output is deterministic for a seed. Programs are meant to be scanned, parsed and resolved, not run.
+ *
+ * Usage: ProgramGenerator [--shape name, default mixed] [--lines n, default 10000] [--depth n, default 20]
+ *                         [--terms n, default 200] [--string-length n, default 10000] [--seed n]
+ * The program goes to standard output.
+ */
+public class ProgramGenerator {
+	static final String[] SHAPES = {"classes", "nesting", "expressions", "strings", "mixed"};
+	private static final String[] OPERATORS = {" + ", " - ", " * ", " / "};
+	private static final String[] COMPARISONS = {" < ", " <= ", " > ", " >= ", " == ", " != "};
+
+	private final String shape;
+	private final Random random;
+	int depth = 20;
+	int terms = 200;
+	int stringLength = 10_000;
+
+	private StringBuilder out;
+	private int lines;
+	private int units;//classes, functions and globals written so far, for unique names
+	private int lastClass;//the class the next one inherits from, -1 for none yet
+	private int previousExpression;//the global an expression can refer to, -1 for none yet
+
+	/**
+	 * @param shape - one of SHAPES
+	 * @param seed
+	 */
+	ProgramGenerator(String shape, long seed) {
+		if (!Arrays.asList(SHAPES).contains(shape)) throw new IllegalArgumentException("Unknown shape " + shape + ".");
+		this.shape = shape;
+		this.random = new Random(seed);
+	}
+
+	public static void main(String[] args) {
+		String shape = "mixed";
+		int lines = 10_000;
+		long seed = 1;
+		int depth = 20, terms = 200, stringLength = 10_000;
+		for (int i = 0; i < args.length - 1; i += 2) {
+			switch (args[i]) {
+				case "--shape": shape = args[i + 1]; break;
+				case "--lines": lines = Integer.parseInt(args[i + 1]); break;
+				case "--depth": depth = Integer.parseInt(args[i + 1]); break;
+				case "--terms": terms = Integer.parseInt(args[i + 1]); break;
+				case "--string-length": stringLength = Integer.parseInt(args[i + 1]); break;
+				case "--seed": seed = Long.parseLong(args[i + 1]); break;
+				default: throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+			}
+		}
+		ProgramGenerator generator = new ProgramGenerator(shape, seed);
+		generator.depth = depth;
+		generator.terms = terms;
+		generator.stringLength = stringLength;
+		System.out.print(generator.generate(lines));
+	}
+
+	/**
+	 * @param targetLines - the program ends after the first unit that reaches this many lines
+	 */
+	String generate(int targetLines) {
+		out = new StringBuilder();
+		lines = 0;
+		units = 0;
+		lastClass = -1;
+		previousExpression = -1;
+		while (lines < targetLines) {
+			String unit = shape.equals("mixed") ? SHAPES[units % 4] : shape;
+			switch (unit) {
+				case "classes": classUnit(); break;
+				case "nesting": nestingUnit(); break;
+				case "expressions": expressionUnit(); break;
+				default: stringUnit(); break;
+			}
+			units++;
+		}
+		return out.toString();
+	}
+
+	private void line(int indent, String text) {
+		for (int i = 0; i < indent; i++) out.append("  ");
+		out.append(text).append('\n');
+		lines++;
+	}
+
+	private String number() {
+		return Integer.toString(random.nextInt(1000));
+	}
+
+	//a class with fields and methods, inheriting from the previous class unless it is the first of a run of ten
+	private void classUnit() {
+		int id = units;
+		String superclass = id % 10 == 0 || lastClass < 0 ? "" : " < C" + lastClass;
+		line(0, "class C" + id + superclass + " {");
+		line(1, "init(a, b) {");
+		line(2, "this.a = a;");
+		line(2, "this.b = b;");
+		line(2, "this.total = a + b;");
+		line(1, "}");
+		for (int m = 0; m < 3; m++) {
+			line(1, "m" + m + "(x) {");
+			line(2, "var y = x * this.a + this.b" + OPERATORS[random.nextInt(OPERATORS.length)] + number() + ";");
+			line(2, "if (y" + COMPARISONS[random.nextInt(COMPARISONS.length)] + number() + ") {");
+			line(3, "this.total = this.total + y;");
+			line(3, "return this.m" + ((m + 1) % 3) + "(y - 1);");
+			line(2, "}");
+			line(2, "return y;");
+			line(1, "}");
+		}
+		line(0, "}");
+		lastClass = id;
+	}
+
+	//a function nesting blocks, ifs and whiles, with locals at every level
+	private void nestingUnit() {
+		line(0, "fun f" + units + "(n) {");
+		line(1, "var v0 = n;");
+		for (int level = 1; level <= depth; level++) {
+			String previous = "v" + (level - 1);
+			switch (level % 3) {
+				case 0: line(level, "{"); break;
+				case 1: line(level, "if (" + previous + COMPARISONS[random.nextInt(COMPARISONS.length)] + number() + ") {"); break;
+				default: line(level, "while (" + previous + " < " + number() + ") {"); break;
+			}
+			line(level + 1, "var v" + level + " = " + previous + OPERATORS[random.nextInt(OPERATORS.length)] + number() + ";");
+			if (level % 3 == 2) line(level + 1, previous + " = " + previous + " + 1;");//the while ends
+		}
+		for (int level = depth; level >= 1; level--) {
+			line(level, "}");
+		}
+		line(1, "return v0;");
+		line(0, "}");
+	}
+
+	//a global set to a long chain of terms over literals, earlier globals and groupings, ten terms a line
+	private void expressionUnit() {
+		StringBuilder expression = new StringBuilder("var e").append(units).append(" = ").append(number());
+		int open = 0;
+		for (int t = 1; t < terms; t++) {
+			expression.append(OPERATORS[random.nextInt(OPERATORS.length)]);
+			if (random.nextInt(8) == 0) {
+				expression.append('(');
+				open++;
+			}
+			expression.append(previousExpression >= 0 && random.nextInt(4) == 0 ? "e" + previousExpression : number());
+			if (open > 0 && random.nextInt(4) == 0) {
+				expression.append(')');
+				open--;
+			}
+			if (t % 10 == 0) {
+				line(0, expression.toString());
+				expression.setLength(0);
+				expression.append("   ");
+			}
+		}
+		while (open-- > 0) expression.append(')');
+		line(0, expression.append(';').toString());
+		previousExpression = units;
+	}
+
+	//a global holding a long string literal, one line
+	private void stringUnit() {
+		StringBuilder literal = new StringBuilder(stringLength + 16).append("var s").append(units).append(" = \"");
+		for (int i = 0; i < stringLength; i++) {
+			literal.append((char)('a' + random.nextInt(26)));
+		}
+		line(0, literal.append("\";").toString());
+	}
+}
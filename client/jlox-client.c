@@ -0,0 +1,173 @@
+/*
+ * jlox-client: the client end of jlox --server without starting a JVM, so a script run through the server
+ * only pays for this process, see LoxServer.
+ *
+ *     cc -O2 -o jlox-client client/jlox-client.c
+ *     jlox-client [--socket path] script
+ *
+ * It speaks the same protocol as jlox --client: the script's absolute path as Java's writeUTF writes it,
+ * then frames back, a one byte stream id, an int length and that many bytes for STDOUT and STDERR,
+ * and EXIT with the int exit status, which it exits with. Ints are big-endian.
+ */
+#include <errno.h>
+#include <pwd.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/socket.h>
+#include <sys/un.h>
+#include <unistd.h>
+
+enum { EXIT_FRAME = 0, STDOUT_FRAME = 1, STDERR_FRAME = 2 };
+
+static int read_fully(int fd, void *buffer, size_t length) {
+	char *p = buffer;
+	while (length > 0) {
+		ssize_t n = read(fd, p, length);
+		if (n < 0 && errno == EINTR) continue;
+		if (n <= 0) return -1;
+		p += n;
+		length -= n;
+	}
+	return 0;
+}
+
+static int write_fully(int fd, const void *buffer, size_t length) {
+	const char *p = buffer;
+	while (length > 0) {
+		ssize_t n = write(fd, p, length);
+		if (n < 0 && errno == EINTR) continue;
+		if (n <= 0) return -1;
+		p += n;
+		length -= n;
+	}
+	return 0;
+}
+
+static uint32_t read_int(int fd, int *failed) {
+	unsigned char b[4];
+	if (read_fully(fd, b, 4) < 0) {
+		*failed = 1;
+		return 0;
+	}
+	return (uint32_t)b[0] << 24 | (uint32_t)b[1] << 16 | (uint32_t)b[2] << 8 | b[3];
+}
+
+/*
+ * Java's modified UTF-8: like UTF-8, except a character outside the Basic Multilingual Plane is written as
+ * its two UTF-16 surrogates, three bytes each. Returns the encoded length, or -1 if it is over writeUTF's limit.
+ */
+static long modified_utf8(const unsigned char *s, unsigned char *out, size_t size) {
+	size_t n = 0;
+	while (*s) {
+		if ((*s & 0xF8) == 0xF0 && s[1] && s[2] && s[3]) {
+			uint32_t c = (uint32_t)(s[0] & 0x07) << 18 | (uint32_t)(s[1] & 0x3F) << 12 | (uint32_t)(s[2] & 0x3F) << 6 | (s[3] & 0x3F);
+			uint32_t surrogates[2] = { 0xD800 + ((c - 0x10000) >> 10), 0xDC00 + ((c - 0x10000) & 0x3FF) };
+			for (int i = 0; i < 2; i++) {
+				if (n + 3 > size) return -1;
+				out[n++] = 0xE0 | surrogates[i] >> 12;
+				out[n++] = 0x80 | (surrogates[i] >> 6 & 0x3F);
+				out[n++] = 0x80 | (surrogates[i] & 0x3F);
+			}
+			s += 4;
+		} else {
+			if (n + 1 > size) return -1;
+			out[n++] = *s++;
+		}
+	}
+	return n <= 0xFFFF ? (long)n : -1;
+}
+
+static void usage(void) {
+	fprintf(stderr, "Usage: jlox-client [--socket path] script\n");
+	exit(64);
+}
+
+int main(int argc, char **argv) {
+	const char *socket_path = NULL;
+	const char *script = NULL;
+	for (int i = 1; i < argc; i++) {
+		if (strcmp(argv[i], "--socket") == 0 && i + 1 < argc) {
+			socket_path = argv[++i];
+		} else if (script == NULL && strncmp(argv[i], "--", 2) != 0) {
+			script = argv[i];
+		} else {
+			usage();
+		}
+	}
+	if (script == NULL) usage();
+
+	/* the server's default, LoxServer.defaultSocket, java.io.tmpdir is /tmp on Unix */
+	char default_socket[sizeof(((struct sockaddr_un *)0)->sun_path)];
+	if (socket_path == NULL) {
+		struct passwd *user = getpwuid(getuid());
+		snprintf(default_socket, sizeof default_socket, "/tmp/jlox-%s.sock", user != NULL ? user->pw_name : "");
+		socket_path = default_socket;
+	}
+
+	/* absolute like Path.toAbsolutePath, not resolving links, the server resolves imports from it */
+	char path[8192];
+	if (script[0] == '/') {
+		snprintf(path, sizeof path, "%s", script);
+	} else {
+		char cwd[4096];
+		if (getcwd(cwd, sizeof cwd) == NULL) {
+			perror("jlox-client");
+			return 74;
+		}
+		snprintf(path, sizeof path, "%s/%s", cwd, script);
+	}
+	unsigned char request[2 + 0xFFFF];
+	long length = modified_utf8((const unsigned char *)path, request + 2, 0xFFFF);
+	if (length < 0) {
+		fprintf(stderr, "Script path too long.\n");
+		return 64;
+	}
+	request[0] = length >> 8;
+	request[1] = length & 0xFF;
+
+	struct sockaddr_un address = { .sun_family = AF_UNIX };
+	if (strlen(socket_path) >= sizeof address.sun_path) {
+		fprintf(stderr, "Socket path too long.\n");
+		return 64;
+	}
+	strcpy(address.sun_path, socket_path);
+	int fd = socket(AF_UNIX, SOCK_STREAM, 0);
+	if (fd < 0 || connect(fd, (struct sockaddr *)&address, sizeof address) < 0) {
+		fprintf(stderr, "No jlox server listening on %s.\n", socket_path);
+		return 69;
+	}
+	if (write_fully(fd, request, 2 + length) < 0) {
+		fprintf(stderr, "Server closed the connection.\n");
+		return 74;
+	}
+
+	char buffer[65536];
+	for (;;) {
+		unsigned char stream;
+		int failed = 0;
+		if (read_fully(fd, &stream, 1) < 0) break;
+		if (stream == EXIT_FRAME) {
+			uint32_t status = read_int(fd, &failed);
+			if (failed) break;
+			return (int)status;
+		}
+
+		int target = stream == STDERR_FRAME ? 2 : 1;
+		uint32_t remaining = read_int(fd, &failed);
+		if (failed) break;
+		while (remaining > 0) {
+			size_t n = remaining < sizeof buffer ? remaining : sizeof buffer;
+			if (read_fully(fd, buffer, n) < 0) {
+				failed = 1;
+				break;
+			}
+			write_fully(target, buffer, n);
+			remaining -= n;
+		}
+		if (failed) break;
+	}
+	fprintf(stderr, "Server closed the connection.\n");
+	return 74;
+}
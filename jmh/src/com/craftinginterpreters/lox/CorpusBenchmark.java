@@ -0,0 +1,56 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The programs of the bench/lox corpus, each run whole in a fresh Interpreter the way CorpusRunner runs them.
+ * The corpus is read from the jlox.corpus system property's directory, bench/lox by default, so run it from the
+ * repository root or pass -jvmArgs -Djlox.corpus=path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CorpusBenchmark {
+	@Param({"binary_trees", "closure_iterators", "inheritance", "instance_fields", "method_calls", "string_equality", "zoo"})
+	public String program;
+
+	private List<Stmt> statements;
+	private boolean usesTasks;
+
+	@Setup
+	public void setUp() throws IOException {
+		String source = Files.readString(Paths.get(System.getProperty("jlox.corpus", "bench/lox"), program + ".lox"));
+		statements = Lox.compile(source, new ErrorReporter(System.err), false);
+		if (statements == null) throw new IllegalStateException(program + " does not compile.");
+		usesTasks = TaskUse.direct(statements);
+	}
+
+	@Benchmark
+	public Interpreter run() {
+		ErrorReporter reporter = new ErrorReporter(System.err);
+		Interpreter interpreter = new Interpreter(OutputSink.discard(), reporter);
+		if (!usesTasks) interpreter.runSingleThreaded();
+		interpreter.interpret(statements);
+		if (reporter.hadRuntimeError) throw new IllegalStateException(program + " failed.");
+		return interpreter;
+	}
+}
@@ -0,0 +1,121 @@
+package com.craftinginterpreters.lox;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The interpreter stages on their own, over a set of small kernels, as JMH benchmarks:
+ * Scanner.scanTokens, Parser.parse, Resolver.resolve and Interpreter.interpret of an already resolved program.
+ * Each stage's input is prepared in setup, so parse doesn't time scanning.
+ * Run with -prof gc for the bytes each operation allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmark {
+	private static final Map<String, String> KERNELS = new LinkedHashMap<>();
+	static {
+		KERNELS.put("arithmetic",
+				"var sum = 0;\n" +
+				"for (var i = 0; i < 20000; i = i + 1) {\n" +
+				"  sum = sum + i * 2 - i / 2;\n" +
+				"}\n");
+		KERNELS.put("fib",
+				"fun fib(n) {\n" +
+				"  if (n < 2) return n;\n" +
+				"  return fib(n - 1) + fib(n - 2);\n" +
+				"}\n" +
+				"fib(18);\n");
+		KERNELS.put("dispatch",
+				"class Adder {\n" +
+				"  add(x) { return x + 1; }\n" +
+				"}\n" +
+				"var adder = Adder();\n" +
+				"var total = 0;\n" +
+				"for (var i = 0; i < 5000; i = i + 1) total = adder.add(total);\n");
+		KERNELS.put("fields",
+				"class Point {\n" +
+				"  init() { this.x = 0; this.y = 0; }\n" +
+				"}\n" +
+				"var p = Point();\n" +
+				"for (var i = 0; i < 5000; i = i + 1) {\n" +
+				"  p.x = p.x + 1;\n" +
+				"  p.y = p.x + p.y;\n" +
+				"}\n");
+		KERNELS.put("closures",
+				"fun makeCounter() {\n" +
+				"  var n = 0;\n" +
+				"  fun count() { n = n + 1; return n; }\n" +
+				"  return count;\n" +
+				"}\n" +
+				"var counter = makeCounter();\n" +
+				"for (var i = 0; i < 5000; i = i + 1) counter();\n");
+		KERNELS.put("strings",
+				"var s = \"\";\n" +
+				"for (var i = 0; i < 500; i = i + 1) {\n" +
+				"  s = s + \"x\";\n" +
+				"  if (s == \"never\") print s;\n" +
+				"}\n");
+	}
+
+	@Param({"arithmetic", "fib", "dispatch", "fields", "closures", "strings"})
+	public String kernel;
+
+	private String source;
+	private List<Token> tokens;
+	private List<Stmt> parsed;
+	private List<Stmt> program;
+	private boolean usesTasks;
+
+	@Setup
+	public void setUp() {
+		source = KERNELS.get(kernel);
+		tokens = new Scanner(source, new ErrorReporter(null)).scanTokens();
+		parsed = new Parser(tokens, new ErrorReporter(null)).parse();
+		program = Lox.compile(source, new ErrorReporter(System.err), false);
+		if (program == null) throw new IllegalStateException(kernel + " does not compile.");
+		usesTasks = TaskUse.direct(program);
+	}
+
+	@Benchmark
+	public List<Token> scan() {
+		return new Scanner(source, new ErrorReporter(null)).scanTokens();
+	}
+
+	@Benchmark
+	public List<Stmt> parse() {
+		return new Parser(tokens, new ErrorReporter(null)).parse();//the parser only reads the tokens
+	}
+
+	@Benchmark
+	public ErrorReporter resolve() {
+		ErrorReporter reporter = new ErrorReporter(null);
+		new Resolver(reporter).resolve(parsed);//writes the same depths each time
+		return reporter;
+	}
+
+	@Benchmark
+	public Interpreter interpret() {
+		Interpreter interpreter = new Interpreter(OutputSink.discard(), new ErrorReporter(null));
+		if (!usesTasks) interpreter.runSingleThreaded();//as jlox runs it
+		interpreter.interpret(program);
+		return interpreter;
+	}
+}
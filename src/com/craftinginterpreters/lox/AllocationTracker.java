@@ -0,0 +1,118 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * jlox --allocations: attributes the interpreter's own allocations to the Lox line and function that caused them.
+ * When an Interpreter has a tracker, each allocation site records the kind of object and its estimated size
+ * against the interpreter's current line, the line of the last token the interpreter acted on,
+ * and the Lox function it is in. Sizes are estimates for a 64-bit JVM with compressed pointers, measured with
+ * ThreadMXBean's allocated bytes on the map layout the program runs on, see concurrentMaps.
+ * The JIT may remove some of these allocations altogether, so the table shows where the pressure comes from, not exact bytes.
+ *
+ * Only the script's own lines are tracked, a module's code records nothing, whether it runs at the import or is called later.
+ * Tasks and pmap pieces record into the same tracker, isolates, running other files, don't.
+ */
+class AllocationTracker {
+	/**
+	 * What was allocated, with its estimated size in bytes on HashMaps and on ConcurrentHashMaps
+	 */
+	enum Kind {
+		ENVIRONMENT(160, 176),//Environment, its map and the map's first table, a call, block, bound method or superclass scope
+		VARIABLE(32),//a new entry in an environment's map, a var or a parameter
+		ARGUMENTS(80),//the ArrayList and its array for a call's arguments
+		NUMBER(16),//a boxed Double from arithmetic
+		STRING(40),//a concatenated String, plus its length in bytes
+		BOUND_METHOD(32),//LoxFunction.bind, its Environment is counted separately
+		INSTANCE(72, 88),//LoxInstance and its field map, the table comes with the first field
+		FIELD(32),//a new entry in an instance's field map
+		CLOSURE(32),//a LoxFunction made by a function declaration
+		RETURN(24);//a ReturnException, made without a stack trace
+
+		final int bytes;
+		final int concurrentBytes;
+
+		Kind(int bytes) {
+			this(bytes, bytes);
+		}
+
+		Kind(int bytes, int concurrentBytes) {
+			this.bytes = bytes;
+			this.concurrentBytes = concurrentBytes;
+		}
+	}
+
+	private static final Kind[] KINDS = Kind.values();
+
+	private final int lines;
+	private final AtomicLongArray objects;//[line * KINDS.length + kind]
+	private final AtomicLongArray bytes;//[line]
+	private final AtomicReferenceArray<String> functions;//[line], the function a line's allocations happened in
+	private volatile boolean concurrent = true;//whether the program's maps are ConcurrentHashMaps, see Kind
+
+	/**
+	 * @param lines - the number of lines in the script
+	 */
+	AllocationTracker(int lines) {
+		this.lines = lines;
+		objects = new AtomicLongArray((lines + 1) * KINDS.length);
+		bytes = new AtomicLongArray(lines + 1);
+		functions = new AtomicReferenceArray<>(lines + 1);
+	}
+
+	/**
+	 * Sets the map layout sizes are estimated for, the program's: set before it runs, it doesn't change after
+	 */
+	void concurrentMaps(boolean concurrent) {
+		this.concurrent = concurrent;
+	}
+
+	/**
+	 * @param kind
+	 * @param line - where the allocation happened
+	 * @param function - the Lox function running, null at the top level
+	 * @param extraBytes - on top of the kind's size, a string's characters for instance
+	 */
+	void record(Kind kind, int line, Stmt.Function function, int extraBytes) {
+		if (line < 1 || line > lines) return;
+		objects.incrementAndGet(line * KINDS.length + kind.ordinal());
+		bytes.addAndGet(line, (concurrent ? kind.concurrentBytes : kind.bytes) + extraBytes);
+		if (functions.get(line) == null) {
+			functions.compareAndSet(line, null, function == null ? "<script>" : function.name.lexeme + ":" + function.name.line);
+		}
+	}
+
+	/**
+	 * Prints the lines that allocated, most bytes first, with the objects of each kind
+	 */
+	void report(String source, PrintStream out) {
+		String[] text = source.split("\r?\n", -1);
+		List<Integer> allocating = new ArrayList<>();
+		long totalBytes = 0, totalObjects = 0;
+		for (int line = 1; line <= lines; line++) {
+			if (bytes.get(line) == 0) continue;
+			allocating.add(line);
+			totalBytes += bytes.get(line);
+			for (Kind kind : KINDS) {
+				totalObjects += objects.get(line * KINDS.length + kind.ordinal());
+			}
+		}
+		allocating.sort((a, b) -> Long.compare(bytes.get(b), bytes.get(a)));
+
+		out.printf("%d objects, about %d bytes, allocated by the interpreter%n", totalObjects, totalBytes);
+		out.printf("%6s %-16s %12s %6s  %s%n", "line", "function", "est. bytes", "%", "objects");
+		for (int line : allocating) {
+			StringBuilder kinds = new StringBuilder();
+			for (Kind kind : KINDS) {
+				long count = objects.get(line * KINDS.length + kind.ordinal());
+				if (count > 0) kinds.append(kinds.length() > 0 ? ", " : "").append(count).append(' ').append(kind.name().toLowerCase());
+			}
+			out.printf("%6d %-16s %12d %5.1f%%  %s%n", line, functions.get(line), bytes.get(line), 100.0 * bytes.get(line) / totalBytes, kinds);
+			if (line <= text.length) out.printf("%6s %s%n", "", text[line - 1].trim());
+		}
+	}
+}
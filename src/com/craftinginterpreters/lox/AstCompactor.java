@@ -0,0 +1,201 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * jlox --compact, LoxEngine(fused, true): rebuilds a resolved program into a smaller copy of itself,
+ * for processes that keep many programs loaded. The copy runs exactly as the original does.
+ *   - Tokens are shared: every use of a name, keyword or operator on the same line is one Token,
+ *     with its lexeme interned across the program and its literal dropped, only the Parser reads that.
+ *   - Lists are immutable and exactly sized, List.of() for every empty one, where the Parser leaves ArrayLists
+ *     with room for ten.
+ *   - Equal literals are one node, and reads of the same variable at the same depth on the same line are one node,
+ *     the Interpreter only reads nodes and the depth is already resolved.
+ * Nodes stay objects: the Interpreter walks the tree through its visitors, so flat arrays of nodes would mean
+ * a second interpreter. The original tree isn't changed and can be dropped.
+ */
+class AstCompactor implements Stmt.Visitor<Stmt>, Expr.Visitor<Expr> {
+	private final Map<String, String> lexemes = new HashMap<>();
+	private final Map<String, Token> tokens = new HashMap<>();//by type, line and lexeme
+	private final Map<Object, Expr.Literal> literals = new HashMap<>();
+	private final Map<String, Expr.Variable> variables = new HashMap<>();//by line, depth and name
+
+	private AstCompactor() {
+	}
+
+	/**
+	 * @param statements - a resolved program
+	 * @return the compact copy
+	 */
+	static List<Stmt> compact(List<Stmt> statements) {
+		return new AstCompactor().statements(statements);
+	}
+
+	private List<Stmt> statements(List<Stmt> statements) {
+		if (statements.isEmpty()) return List.of();
+		List<Stmt> result = new ArrayList<>(statements.size());
+		for (Stmt statement : statements) {
+			result.add(copy(statement));
+		}
+		return List.copyOf(result);
+	}
+
+	private Stmt copy(Stmt stmt) {
+		return stmt == null ? null : stmt.accept(this);
+	}
+
+	private Expr copy(Expr expr) {
+		return expr == null ? null : expr.accept(this);
+	}
+
+	private Token token(Token token) {
+		String lexeme = lexemes.computeIfAbsent(token.lexeme, text -> text);
+		return tokens.computeIfAbsent(token.type + " " + token.line + " " + lexeme, key -> new Token(token.type, lexeme, null, token.line));
+	}
+
+	private Stmt.Function function(Stmt.Function stmt) {
+		List<Token> params = new ArrayList<>(stmt.params.size());
+		for (Token param : stmt.params) {
+			params.add(token(param));
+		}
+		return new Stmt.Function(token(stmt.name), List.copyOf(params), statements(stmt.body));
+	}
+
+	private Expr.Variable variable(Expr.Variable expr) {
+		Token name = token(expr.name);
+		return variables.computeIfAbsent(name.line + " " + expr.depth + " " + name.lexeme, key -> {
+			Expr.Variable copy = new Expr.Variable(name);
+			copy.depth = expr.depth;
+			return copy;
+		});
+	}
+
+	@Override
+	public Stmt visitBlockStmt(Stmt.Block stmt) {
+		return new Stmt.Block(statements(stmt.statements));
+	}
+
+	@Override
+	public Stmt visitClassStmt(Stmt.Class stmt) {
+		List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+		for (Stmt.Function method : stmt.methods) {
+			methods.add(function(method));
+		}
+		return new Stmt.Class(token(stmt.name), stmt.superclass == null ? null : variable(stmt.superclass), List.copyOf(methods));
+	}
+
+	@Override
+	public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+		return new Stmt.Expression(copy(stmt.expression));
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Stmt.Function stmt) {
+		return function(stmt);
+	}
+
+	@Override
+	public Stmt visitIfStmt(Stmt.If stmt) {
+		return new Stmt.If(copy(stmt.condition), copy(stmt.thenBranch), copy(stmt.elseBranch));
+	}
+
+	@Override
+	public Stmt visitWhileStmt(Stmt.While stmt) {
+		return new Stmt.While(copy(stmt.condition), copy(stmt.body));
+	}
+
+	@Override
+	public Stmt visitPrintStmt(Stmt.Print stmt) {
+		return new Stmt.Print(copy(stmt.expression));
+	}
+
+	@Override
+	public Stmt visitReturnStmt(Stmt.Return stmt) {
+		return new Stmt.Return(token(stmt.keyword), copy(stmt.value));
+	}
+
+	@Override
+	public Stmt visitVarStmt(Stmt.Var stmt) {
+		return new Stmt.Var(token(stmt.name), copy(stmt.initializer));
+	}
+
+	@Override
+	public Stmt visitImportStmt(Stmt.Import stmt) {
+		return new Stmt.Import(token(stmt.keyword), stmt.path);
+	}
+
+	@Override
+	public Expr visitAssignExpr(Expr.Assign expr) {
+		Expr.Assign copy = new Expr.Assign(token(expr.name), copy(expr.value));
+		copy.depth = expr.depth;
+		return copy;
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Expr.Binary expr) {
+		return new Expr.Binary(copy(expr.left), token(expr.operator), copy(expr.right));
+	}
+
+	@Override
+	public Expr visitCallExpr(Expr.Call expr) {
+		List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+		for (Expr argument : expr.arguments) {
+			arguments.add(copy(argument));
+		}
+		return new Expr.Call(copy(expr.callee), token(expr.paren), List.copyOf(arguments));
+	}
+
+	@Override
+	public Expr visitGetExpr(Expr.Get expr) {
+		return new Expr.Get(copy(expr.object), token(expr.name));
+	}
+
+	@Override
+	public Expr visitGroupingExpr(Expr.Grouping expr) {
+		return new Expr.Grouping(copy(expr.expression));
+	}
+
+	@Override
+	public Expr visitLiteralExpr(Expr.Literal expr) {
+		if (expr.value == null) return literals.computeIfAbsent(Environment.NIL, key -> expr);
+		Object value = expr.value instanceof String ? lexemes.computeIfAbsent((String)expr.value, text -> text) : expr.value;
+		return literals.computeIfAbsent(value, key -> new Expr.Literal(key));//Double and Boolean keys compare by value
+	}
+
+	@Override
+	public Expr visitLogicalExpr(Expr.Logical expr) {
+		return new Expr.Logical(copy(expr.left), token(expr.operator), copy(expr.right));
+	}
+
+	@Override
+	public Expr visitSetExpr(Expr.Set expr) {
+		return new Expr.Set(copy(expr.object), token(expr.name), copy(expr.value));
+	}
+
+	@Override
+	public Expr visitSuperExpr(Expr.Super expr) {
+		Expr.Super copy = new Expr.Super(token(expr.keyword), token(expr.method));
+		copy.depth = expr.depth;
+		return copy;
+	}
+
+	@Override
+	public Expr visitThisExpr(Expr.This expr) {
+		Expr.This copy = new Expr.This(token(expr.keyword));
+		copy.depth = expr.depth;
+		return copy;
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Expr.Unary expr) {
+		return new Expr.Unary(token(expr.operator), copy(expr.right));
+	}
+
+	@Override
+	public Expr visitVariableExpr(Expr.Variable expr) {
+		return variable(expr);
+	}
+}
@@ -0,0 +1,202 @@
+package com.craftinginterpreters.lox;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.craftinginterpreters.lox.AstWriter.*;
+
+/**
+ * Rebuilds a program written by AstWriter.
+ * Resolved depths are restored onto the nodes, just like the Resolver would have set them,
+ * so a program read back from a .loxc file is ready to interpret.
+ */
+class AstReader {
+	private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+	private String[] pool;
+	private byte[] tree;
+	private int position = 0;
+
+	/**
+	 * Reads the string pool and the tree that follows it
+	 * @param in - positioned just after the cache file header
+	 * @return the program's statements
+	 * @throws IOException when the input is truncated or not something AstWriter produced
+	 */
+	List<Stmt> read(DataInputStream in) throws IOException {
+		pool = new String[in.readInt()];
+		for (int i = 0; i < pool.length; i++) {
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			pool[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		tree = in.readAllBytes();
+
+		try {
+			List<Stmt> statements = readStatements();
+			if (position != tree.length) throw new IOException("Trailing bytes after program.");
+			return statements;
+		} catch (RuntimeException error) {//an index out of range or bad cast means a corrupt file
+			throw new IOException("Malformed program.", error);
+		}
+	}
+
+	private List<Stmt> readStatements() {
+		int count = readVarint();
+		List<Stmt> statements = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			statements.add(readStmt());
+		}
+		return statements;
+	}
+
+	private List<Expr> readExprs() {
+		int count = readVarint();
+		List<Expr> exprs = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			exprs.add(readExpr());
+		}
+		return exprs;
+	}
+
+	private Stmt readStmt() {
+		int tag = readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case BLOCK:
+			return new Stmt.Block(readStatements());
+		case CLASS: {
+			Token name = readToken();
+			Expr.Variable superclass = (Expr.Variable)readExpr();
+			int count = readVarint();
+			List<Stmt.Function> methods = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				methods.add((Stmt.Function)readStmt());
+			}
+			return new Stmt.Class(name, superclass, methods);
+		}
+		case EXPRESSION:
+			return new Stmt.Expression(readExpr());
+		case FUNCTION: {
+			Token name = readToken();
+			int count = readVarint();
+			List<Token> params = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				params.add(readToken());
+			}
+			return new Stmt.Function(name, params, readStatements());
+		}
+		case IF:
+			return new Stmt.If(readExpr(), readStmt(), readStmt());//arguments are evaluated left to right, same order as written
+		case WHILE:
+			return new Stmt.While(readExpr(), readStmt());
+		case PRINT:
+			return new Stmt.Print(readExpr());
+		case RETURN:
+			return new Stmt.Return(readToken(), readExpr());
+		case VAR:
+			return new Stmt.Var(readToken(), readExpr());
+		case IMPORT:
+			return new Stmt.Import(readToken(), pool[readVarint()]);
+		default:
+			throw new IllegalStateException("Unknown statement tag " + tag + ".");
+		}
+	}
+
+	private Expr readExpr() {
+		int tag = readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case ASSIGN: {
+			Expr.Assign expr = new Expr.Assign(readToken(), readExpr());
+			expr.depth = readDepth();
+			return expr;
+		}
+		case BINARY:
+			return new Expr.Binary(readExpr(), readToken(), readExpr());
+		case CALL:
+			return new Expr.Call(readExpr(), readToken(), readExprs());
+		case GET:
+			return new Expr.Get(readExpr(), readToken());
+		case GROUPING:
+			return new Expr.Grouping(readExpr());
+		case LITERAL:
+			return new Expr.Literal(readLiteral());
+		case LOGICAL:
+			return new Expr.Logical(readExpr(), readToken(), readExpr());
+		case SET:
+			return new Expr.Set(readExpr(), readToken(), readExpr());
+		case SUPER: {
+			Expr.Super expr = new Expr.Super(readToken(), readToken());
+			expr.depth = readDepth();
+			return expr;
+		}
+		case THIS: {
+			Expr.This expr = new Expr.This(readToken());
+			expr.depth = readDepth();
+			return expr;
+		}
+		case UNARY:
+			return new Expr.Unary(readToken(), readExpr());
+		case VARIABLE: {
+			Expr.Variable expr = new Expr.Variable(readToken());
+			expr.depth = readDepth();
+			return expr;
+		}
+		default:
+			throw new IllegalStateException("Unknown expression tag " + tag + ".");
+		}
+	}
+
+	private Object readLiteral() {
+		int tag = readByte();
+		switch (tag) {
+		case NIL:
+			return null;
+		case FALSE:
+			return false;
+		case TRUE:
+			return true;
+		case NUMBER: {
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits = (bits << 8) | readByte();
+			}
+			return Double.longBitsToDouble(bits);
+		}
+		case STRING:
+			return pool[readVarint()];
+		default:
+			throw new IllegalStateException("Unknown literal tag " + tag + ".");
+		}
+	}
+
+	//the depth follows the node's other fields
+	private int readDepth() {
+		return readVarint() - 1;
+	}
+
+	private Token readToken() {
+		TokenType type = TOKEN_TYPES[readByte()];
+		String lexeme = pool[readVarint()];
+		return new Token(type, lexeme, null, readVarint());
+	}
+
+	private int readByte() {
+		return tree[position++] & 0xFF;
+	}
+
+	private int readVarint() {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.craftinginterpreters.lox.Expr.Assign;
+import com.craftinginterpreters.lox.Expr.Binary;
+import com.craftinginterpreters.lox.Expr.Call;
+import com.craftinginterpreters.lox.Expr.Get;
+import com.craftinginterpreters.lox.Expr.Grouping;
+import com.craftinginterpreters.lox.Expr.Literal;
+import com.craftinginterpreters.lox.Expr.Logical;
+import com.craftinginterpreters.lox.Expr.Set;
+import com.craftinginterpreters.lox.Expr.Super;
+import com.craftinginterpreters.lox.Expr.This;
+import com.craftinginterpreters.lox.Expr.Unary;
+import com.craftinginterpreters.lox.Expr.Variable;
+import com.craftinginterpreters.lox.Stmt.Block;
+import com.craftinginterpreters.lox.Stmt.Class;
+import com.craftinginterpreters.lox.Stmt.Expression;
+import com.craftinginterpreters.lox.Stmt.Function;
+import com.craftinginterpreters.lox.Stmt.If;
+import com.craftinginterpreters.lox.Stmt.Import;
+import com.craftinginterpreters.lox.Stmt.Print;
+import com.craftinginterpreters.lox.Stmt.Return;
+import com.craftinginterpreters.lox.Stmt.Var;
+import com.craftinginterpreters.lox.Stmt.While;
+
+/**
+ * Serializes a parsed and resolved program into the compact binary form used by .loxc cache files.
+ * Every node is a one byte tag followed by its fields in declaration order.
+ * Tokens are written as type, an index into the string pool for the lexeme, and the line.
+ * Variable, Assign, This and Super also carry their resolved depth (0 for a global, otherwise depth + 1)
+ * so the AstReader can restore them without running the Resolver.
+ * All strings, lexemes and string literals alike, go into one pool written ahead of the tree.
+ */
+class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+	//node tags, shared with AstReader. 0 is a null node
+	static final int NULL = 0;
+	static final int ASSIGN = 1, BINARY = 2, CALL = 3, GET = 4, GROUPING = 5, LITERAL = 6,
+			LOGICAL = 7, SET = 8, SUPER = 9, THIS = 10, UNARY = 11, VARIABLE = 12;
+	static final int BLOCK = 20, CLASS = 21, EXPRESSION = 22, FUNCTION = 23, IF = 24,
+			WHILE = 25, PRINT = 26, RETURN = 27, VAR = 28, IMPORT = 29;
+
+	//literal value tags
+	static final int NIL = 0, FALSE = 1, TRUE = 2, NUMBER = 3, STRING = 4;
+
+	private final ByteArrayOutputStream tree = new ByteArrayOutputStream();
+	private final List<String> pool = new ArrayList<>();
+	private final Map<String, Integer> poolIndex = new HashMap<>();
+
+	/**
+	 * Writes the string pool followed by the statements
+	 * @param statements - a program that parsed and resolved without errors
+	 * @param out
+	 */
+	void write(List<Stmt> statements, DataOutputStream out) throws IOException {
+		writeVarint(statements.size());
+		for (Stmt statement : statements) {
+			write(statement);
+		}
+
+		out.writeInt(pool.size());
+		for (String string : pool) {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);//not writeUTF, string literals can be longer than 64k
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		tree.writeTo(out);
+	}
+
+	private void write(Stmt stmt) {
+		if (stmt == null) {
+			tree.write(NULL);
+		} else {
+			stmt.accept(this);
+		}
+	}
+
+	private void write(Expr expr) {
+		if (expr == null) {
+			tree.write(NULL);
+		} else {
+			expr.accept(this);
+		}
+	}
+
+	private void writeStatements(List<? extends Stmt> statements) {
+		writeVarint(statements.size());
+		for (Stmt statement : statements) {
+			write(statement);
+		}
+	}
+
+	private void write(Token token) {
+		tree.write(token.type.ordinal());
+		writeString(token.lexeme);
+		writeVarint(token.line);
+	}
+
+	private void writeDepth(int depth) {
+		writeVarint(depth + 1);
+	}
+
+	private void writeString(String string) {
+		Integer index = poolIndex.get(string);
+		if (index == null) {
+			index = pool.size();
+			pool.add(string);
+			poolIndex.put(string, index);
+		}
+		writeVarint(index);
+	}
+
+	//unsigned LEB128, most depths, lines and pool indexes fit in a byte or two
+	private void writeVarint(int value) {
+		while ((value & ~0x7F) != 0) {
+			tree.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		tree.write(value);
+	}
+
+	@Override
+	public Void visitBlockStmt(Block stmt) {
+		tree.write(BLOCK);
+		writeStatements(stmt.statements);
+		return null;
+	}
+
+	@Override
+	public Void visitClassStmt(Class stmt) {
+		tree.write(CLASS);
+		write(stmt.name);
+		write(stmt.superclass);
+		writeStatements(stmt.methods);
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionStmt(Expression stmt) {
+		tree.write(EXPRESSION);
+		write(stmt.expression);
+		return null;
+	}
+
+	@Override
+	public Void visitFunctionStmt(Function stmt) {
+		tree.write(FUNCTION);
+		write(stmt.name);
+		writeVarint(stmt.params.size());
+		for (Token param : stmt.params) {
+			write(param);
+		}
+		writeStatements(stmt.body);
+		return null;
+	}
+
+	@Override
+	public Void visitIfStmt(If stmt) {
+		tree.write(IF);
+		write(stmt.condition);
+		write(stmt.thenBranch);
+		write(stmt.elseBranch);
+		return null;
+	}
+
+	@Override
+	public Void visitWhileStmt(While stmt) {
+		tree.write(WHILE);
+		write(stmt.condition);
+		write(stmt.body);
+		return null;
+	}
+
+	@Override
+	public Void visitPrintStmt(Print stmt) {
+		tree.write(PRINT);
+		write(stmt.expression);
+		return null;
+	}
+
+	@Override
+	public Void visitReturnStmt(Return stmt) {
+		tree.write(RETURN);
+		write(stmt.keyword);
+		write(stmt.value);
+		return null;
+	}
+
+	@Override
+	public Void visitVarStmt(Var stmt) {
+		tree.write(VAR);
+		write(stmt.name);
+		write(stmt.initializer);
+		return null;
+	}
+
+	@Override
+	public Void visitImportStmt(Import stmt) {
+		tree.write(IMPORT);
+		write(stmt.keyword);
+		writeString(stmt.path);
+		return null;
+	}
+
+	@Override
+	public Void visitAssignExpr(Assign expr) {
+		tree.write(ASSIGN);
+		write(expr.name);
+		write(expr.value);
+		writeDepth(expr.depth);
+		return null;
+	}
+
+	@Override
+	public Void visitBinaryExpr(Binary expr) {
+		tree.write(BINARY);
+		write(expr.left);
+		write(expr.operator);
+		write(expr.right);
+		return null;
+	}
+
+	@Override
+	public Void visitCallExpr(Call expr) {
+		tree.write(CALL);
+		write(expr.callee);
+		write(expr.paren);
+		writeVarint(expr.arguments.size());
+		for (Expr argument : expr.arguments) {
+			write(argument);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitGetExpr(Get expr) {
+		tree.write(GET);
+		write(expr.object);
+		write(expr.name);
+		return null;
+	}
+
+	@Override
+	public Void visitGroupingExpr(Grouping expr) {
+		tree.write(GROUPING);
+		write(expr.expression);
+		return null;
+	}
+
+	@Override
+	public Void visitLiteralExpr(Literal expr) {
+		tree.write(LITERAL);
+		Object value = expr.value;
+		if (value == null) {
+			tree.write(NIL);
+		} else if (value instanceof Boolean) {
+			tree.write((Boolean)value ? TRUE : FALSE);
+		} else if (value instanceof Double) {
+			tree.write(NUMBER);
+			long bits = Double.doubleToRawLongBits((Double)value);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				tree.write((int)(bits >>> shift));
+			}
+		} else {
+			tree.write(STRING);
+			writeString((String)value);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitLogicalExpr(Logical expr) {
+		tree.write(LOGICAL);
+		write(expr.left);
+		write(expr.operator);
+		write(expr.right);
+		return null;
+	}
+
+	@Override
+	public Void visitSetExpr(Set expr) {
+		tree.write(SET);
+		write(expr.object);
+		write(expr.name);
+		write(expr.value);
+		return null;
+	}
+
+	@Override
+	public Void visitSuperExpr(Super expr) {
+		tree.write(SUPER);
+		write(expr.keyword);
+		write(expr.method);
+		writeDepth(expr.depth);
+		return null;
+	}
+
+	@Override
+	public Void visitThisExpr(This expr) {
+		tree.write(THIS);
+		write(expr.keyword);
+		writeDepth(expr.depth);
+		return null;
+	}
+
+	@Override
+	public Void visitUnaryExpr(Unary expr) {
+		tree.write(UNARY);
+		write(expr.operator);
+		write(expr.right);
+		return null;
+	}
+
+	@Override
+	public Void visitVariableExpr(Variable expr) {
+		tree.write(VARIABLE);
+		write(expr.name);
+		writeDepth(expr.depth);
+		return null;
+	}
+}
@@ -0,0 +1,24 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+/**
+ * Thrown by LoxEngine.compile for a script with syntax or resolution errors
+ */
+public class CompileError extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+	
+	private final String[] errors;//an array, so the exception stays serializable
+	
+	CompileError(List<String> errors) {
+		super(String.join("\n", errors));
+		this.errors = errors.toArray(new String[0]);
+	}
+	
+	/**
+	 * @return each error as it would be printed by jlox, "[line N] Error at 'x': message"
+	 */
+	public List<String> getErrors() {
+		return List.of(errors);
+	}
+}
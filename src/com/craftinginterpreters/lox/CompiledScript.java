@@ -0,0 +1,68 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * A parsed and resolved program, from LoxEngine.compile.
+ * Immutable: the syntax tree, resolved depths included, is only read while running,
+ * so one CompiledScript can be run any number of times, concurrently, without re-parsing.
+ */
+public final class CompiledScript {
+	private final List<Stmt> statements;
+	private final boolean usesTasks;//see TaskUse, runs that can't start tasks use the cheaper single-threaded maps
+	
+	CompiledScript(List<Stmt> statements) {
+		this.statements = statements;//final, so the depths set during compilation are visible to every thread that runs it
+		this.usesTasks = TaskUse.in(statements, ModuleLoader.DEFAULT, Paths.get(""));//where a run's interpreter imports from
+	}
+	
+	/**
+	 * Run with print going to System.out and runtime errors to System.err
+	 * @return true if the script finished without a runtime error
+	 */
+	public boolean run() {
+		return run(System.out, System.err);
+	}
+	
+	/**
+	 * Run in a new Interpreter, so with fresh globals
+	 * @param out - where print statements go
+	 * @param err - where a runtime error is reported
+	 * @return true if the script finished without a runtime error
+	 */
+	public boolean run(PrintStream out, PrintStream err) {
+		OutputSink sink = OutputSink.of(out);
+		boolean ok = run(sink, err);
+		sink.flush();
+		return ok;
+	}
+	
+	/**
+	 * Run in a new Interpreter printing to a sink, which is left for the caller to flush or close,
+	 * so several runs can share one sink
+	 * @param out - where print statements go
+	 * @param err - where a runtime error is reported
+	 * @return true if the script finished without a runtime error
+	 */
+	public boolean run(OutputSink out, PrintStream err) {
+		return run(out, err, null);
+	}
+	
+	/**
+	 * Run counting into metrics, which many runs can share
+	 * @param out - where print statements go
+	 * @param err - where a runtime error is reported
+	 * @param metrics - live counters, see InterpreterMetrics, or null
+	 * @return true if the script finished without a runtime error
+	 */
+	public boolean run(OutputSink out, PrintStream err, InterpreterMetrics metrics) {
+		ErrorReporter reporter = new ErrorReporter(err);
+		Interpreter interpreter = new Interpreter(out, reporter);
+		interpreter.metrics = metrics;
+		if (!usesTasks) interpreter.runSingleThreaded();
+		interpreter.interpret(statements);
+		return !reporter.hadRuntimeError;
+	}
+}
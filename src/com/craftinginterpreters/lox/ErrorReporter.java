@@ -0,0 +1,105 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where the Scanner, Parser, Resolver and Interpreter send their errors.
+ * One per compilation or execution, so scripts compiled or run side by side don't see each other's errors.
+ * Messages are printed to err, when there is one, and kept for the caller.
+ * Tasks report through their parent's reporter, so reporting is synchronized.
+ */
+class ErrorReporter {
+	private final PrintStream err;
+	private final List<String> messages = new ArrayList<>();
+	private final List<Diagnostic> diagnostics = new ArrayList<>();//the compile errors, for tools that place them
+	boolean hadError = false;
+	boolean hadRuntimeError = false;
+
+	/**
+	 * @param err - where to print errors as they are reported, or null to only collect them
+	 */
+	ErrorReporter(PrintStream err) {
+		this.err = err;
+	}
+
+	void error(int line, String message) {
+		report(line, "", message);
+	}
+
+	/**
+	 * A syntax or resolution error, where it is and what it says
+	 */
+	static final class Diagnostic {
+		final int line;
+		final String where;//" at 'x'", "at end" or empty
+		final String message;
+
+		Diagnostic(int line, String where, String message) {
+			this.line = line;
+			this.where = where;
+			this.message = message;
+		}
+
+		boolean atEnd() {
+			return where.contains("at end") || message.equals("Unterminated string.");
+		}
+	}
+
+	synchronized void report(int line, String where, String message) {
+		diagnostics.add(new Diagnostic(line, where, message));
+		print("[line " + line + "] Error" + where + ": " + message);
+		hadError = true;
+	}
+
+	/**
+	 * Errors another reporter collected compiling an imported module, printed with the module's path in front
+	 */
+	synchronized void moduleErrors(Path module, List<String> messages) {
+		for (String message : messages) {
+			print(module + ": " + message);
+		}
+		hadError = true;
+	}
+
+	void error(Token token, String message) {
+		if (token.type == TokenType.EOF) {
+			report(token.line, "at end", message);
+		} else {
+			report(token.line, " at '" + token.lexeme + "'", message);
+		}
+	}
+
+	synchronized void runtimeError(RuntimeError error) {
+		LoxEvents.RuntimeError event = new LoxEvents.RuntimeError();
+		if (event.isEnabled()) {
+			event.message = error.getMessage();
+			event.line = error.token == null ? 0 : error.token.line;
+			event.commit();
+		}
+		if (error.token == null) {//a task's stack overflow, which has no line
+			print(error.getMessage());
+		} else if (error.module != null) {//the module's path in front of the line, as for its compile errors
+			print(error.getMessage() + "\n" + error.module + ": [line " + error.token.line + "]");
+		} else {
+			print(error.getMessage() + "\n[line " + error.token.line + "]");
+		}
+		hadRuntimeError = true;
+	}
+
+	synchronized List<String> messages() {
+		return Collections.unmodifiableList(new ArrayList<>(messages));
+	}
+
+	synchronized List<Diagnostic> diagnostics() {
+		return new ArrayList<>(diagnostics);
+	}
+
+	private void print(String message) {
+		messages.add(message);
+		if (err != null) err.println(message);
+	}
+}
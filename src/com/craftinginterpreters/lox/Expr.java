@@ -37,6 +37,7 @@ abstract class Expr {
 
 		final Token name;
 		final  Expr value;
+		int depth = -1;//set by the Resolver, the number of environments between use and definition, -1 for a global
 	}
 
 	//Binary
@@ -161,6 +162,7 @@ abstract class Expr {
 
 		final Token keyword;
 		final  Token method;
+		int depth = -1;//set by the Resolver, the number of environments between use and definition, -1 for a global
 	}
 
 	//This
@@ -174,6 +176,7 @@ abstract class Expr {
 		}
 
 		final Token keyword;
+		int depth = -1;//set by the Resolver, the number of environments between use and definition, -1 for a global
 	}
 
 	//Unary
@@ -202,5 +205,6 @@ abstract class Expr {
 		}
 
 		final Token name;
+		int depth = -1;//set by the Resolver, the number of environments between use and definition, -1 for a global
 	}
 }
@@ -0,0 +1,196 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A census of the Lox values reachable from some environments, for heapStats() and jlox --heap-report.
+ * It walks everything reachable, each object once, and charges each object's estimated size to the class or function
+ * that first reached it: an instance and what its fields hold to its class, a function and what its closure holds to the function.
+ * So a closure pinning a big environment chain shows up as a function retaining many environments and bytes.
+ * Values only reachable from the globals themselves, not through an instance or function, are counted in the totals alone.
+ *
+ * Sizes are the estimates AllocationTracker uses. Environments of callers further up the Lox call stack are reached
+ * only through closures, an interpreter keeps no list of them, so heapStats() sees the globals, the environment
+ * it was called in and its enclosing ones, and what they reach.
+ * A census is a snapshot: values tasks change during the walk may be seen before or after the change.
+ */
+class HeapCensus {
+	private static final int CLASS_BYTES = 64;//LoxClass and its method map, methods are counted as closures
+	private static final int LIST_BYTES = 40;//LoxList and its array header, plus a reference per element
+	private static final int MAP_BYTES = 56;//LoxMap and its two array headers, plus two references per slot
+	private static final int ARRAY_BYTES = 48;//LoxDoubleArray and its buffer, plus 8 bytes per element
+
+	/**
+	 * What a class or a function retains
+	 */
+	private static final class Row {
+		long objects;//instances of the class, closures of the function
+		long fields;//fields of the instances
+		long environments;//environments first reached through the row
+		long bytes;//estimated bytes of everything first reached through the row
+	}
+
+	private final Map<String, Row> classes = new LinkedHashMap<>();//by class name
+	private final Map<String, Row> functions = new LinkedHashMap<>();//by name:line of the declaration
+	private final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final Deque<Object> pending = new ArrayDeque<>();//objects to visit, each followed by its owning row
+	private final Row unowned = new Row();//values reached from the roots themselves, pending can't hold null
+	private long objects = 0;
+	private long environments = 0;
+	private long bytes = 0;
+
+	private HeapCensus() {
+	}
+
+	/**
+	 * @param roots - environments to start from, the globals first
+	 */
+	static HeapCensus take(Environment... roots) {
+		HeapCensus census = new HeapCensus();
+		for (Environment root : roots) {
+			census.walk(root);
+		}
+		return census;
+	}
+
+	private void walk(Object root) {
+		push(root, unowned);
+		while (!pending.isEmpty()) {
+			Object value = pending.pop();
+			Row owner = (Row)pending.pop();
+			visit(value, owner);
+		}
+	}
+
+	private void push(Object value, Row owner) {
+		if (value == null || value == Environment.NIL || value instanceof Boolean) return;//nil and the two Booleans cost nothing
+		pending.push(owner);
+		pending.push(value);
+	}
+
+	private void visit(Object value, Row owner) {
+		if (!seen.add(value)) return;
+		objects++;
+
+		if (value instanceof Environment) {
+			Environment environment = (Environment)value;
+			List<Object> values = new ArrayList<>(environment.values());//a copy, so the count and the walk agree while tasks define
+			charge(owner, AllocationTracker.Kind.ENVIRONMENT.bytes + values.size() * AllocationTracker.Kind.VARIABLE.bytes);
+			environments++;
+			owner.environments++;
+			for (Object element : values) push(element, owner);
+			push(environment.enclosing, owner);
+		} else if (value instanceof LoxInstance) {
+			LoxInstance instance = (LoxInstance)value;
+			Row row = classes.computeIfAbsent(instance.klass().name, name -> new Row());
+			List<Object> fields = new ArrayList<>(instance.fieldValues());
+			row.objects++;
+			row.fields += fields.size();
+			charge(row, AllocationTracker.Kind.INSTANCE.bytes + fields.size() * AllocationTracker.Kind.FIELD.bytes);
+			push(instance.klass(), row);
+			for (Object field : fields) push(field, row);
+		} else if (value instanceof LoxFunction) {
+			LoxFunction function = (LoxFunction)value;
+			Token name = function.declaration().name;
+			Row row = functions.computeIfAbsent(name.lexeme + ":" + name.line, label -> new Row());
+			row.objects++;
+			charge(row, AllocationTracker.Kind.CLOSURE.bytes);
+			push(function.closure(), row);
+		} else if (value instanceof LoxClass) {
+			LoxClass klass = (LoxClass)value;
+			charge(owner, CLASS_BYTES);
+			push(klass.superclass, owner);
+			for (LoxFunction method : klass.methods()) push(method, owner);
+		} else if (value instanceof LoxList) {
+			LoxList list = (LoxList)value;
+			int size = list.size();
+			charge(owner, LIST_BYTES + 4L * size);
+			for (int i = 0; i < size; i++) push(list.get(i), owner);
+		} else if (value instanceof LoxMap) {
+			LoxMap map = (LoxMap)value;
+			LoxList keys = map.keys();
+			charge(owner, MAP_BYTES + 8L * Math.max(8, keys.size() * 2));//at most half full
+			for (int i = 0; i < keys.size(); i++) {
+				push(keys.get(i), owner);
+				push(map.lookup(keys.get(i)), owner);
+			}
+		} else if (value instanceof LoxDoubleArray) {
+			charge(owner, ARRAY_BYTES + 8L * ((LoxDoubleArray)value).length());
+		} else if (value instanceof String) {
+			charge(owner, AllocationTracker.Kind.STRING.bytes + ((String)value).length());
+		} else if (value instanceof Double) {
+			charge(owner, AllocationTracker.Kind.NUMBER.bytes);
+		} else {
+			charge(owner, 16);//a native function, task, channel or isolate, what it holds isn't Lox's to count
+		}
+	}
+
+	private void charge(Row owner, long size) {
+		bytes += size;
+		owner.bytes += size;
+	}
+
+	/**
+	 * The census as a Lox map: bytes, objects, environments, and classes and functions,
+	 * maps from a class name to {instances, fields, bytes} and from name:line to {closures, environments, bytes}
+	 */
+	LoxMap toMap() {
+		LoxMap result = new LoxMap();
+		result.put("bytes", (double)bytes);
+		result.put("objects", (double)objects);
+		result.put("environments", (double)environments);
+		LoxMap classMap = new LoxMap();
+		for (Map.Entry<String, Row> entry : classes.entrySet()) {
+			Row row = entry.getValue();
+			LoxMap stats = new LoxMap();
+			stats.put("instances", (double)row.objects);
+			stats.put("fields", (double)row.fields);
+			stats.put("bytes", (double)row.bytes);
+			classMap.put(entry.getKey(), stats);
+		}
+		result.put("classes", classMap);
+		LoxMap functionMap = new LoxMap();
+		for (Map.Entry<String, Row> entry : functions.entrySet()) {
+			Row row = entry.getValue();
+			LoxMap stats = new LoxMap();
+			stats.put("closures", (double)row.objects);
+			stats.put("environments", (double)row.environments);
+			stats.put("bytes", (double)row.bytes);
+			functionMap.put(entry.getKey(), stats);
+		}
+		result.put("functions", functionMap);
+		return result;
+	}
+
+	/**
+	 * Prints the totals and a table each for classes and functions, most bytes first
+	 */
+	void report(PrintStream out) {
+		out.printf("%d reachable objects, %d environments, about %d bytes%n", objects, environments, bytes);
+		out.printf("%-24s %10s %10s %12s%n", "class", "instances", "fields", "est. bytes");
+		for (Map.Entry<String, Row> entry : sorted(classes)) {
+			Row row = entry.getValue();
+			out.printf("%-24s %10d %10d %12d%n", entry.getKey(), row.objects, row.fields, row.bytes);
+		}
+		out.printf("%-24s %10s %10s %12s%n", "function", "closures", "envs", "est. bytes");
+		for (Map.Entry<String, Row> entry : sorted(functions)) {
+			Row row = entry.getValue();
+			out.printf("%-24s %10d %10d %12d%n", entry.getKey(), row.objects, row.environments, row.bytes);
+		}
+	}
+
+	private static List<Map.Entry<String, Row>> sorted(Map<String, Row> rows) {
+		List<Map.Entry<String, Row>> result = new ArrayList<>(rows.entrySet());
+		result.sort((a, b) -> Long.compare(b.getValue().bytes, a.getValue().bytes));
+		return result;
+	}
+}
@@ -0,0 +1,203 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An open Lox file whose diagnostics are kept up to date edit by edit, for the language server.
+ * The text is kept as a list of segments, one per top-level declaration, each scanned, parsed and resolved on its own
+ * and keeping its errors.
+ * Top-level declarations don't depend on each other to parse or resolve, globals are looked up at runtime,
+ * so an edit only re-scans, re-parses and re-resolves the segments it touches. The rest are left as they were.
+ *
+ * The touched text is split into new segments at the declarations it now holds. If it ends in an error at the end of input,
+ * an unclosed brace or string, the next segment is pulled in and it is tried again: the edit has joined them.
+ * Each segment is scanned on its own, so its lines count from 1, and diagnostics() adds the lines of the segments before it.
+ * Positions are found the same way, from the segments' newline counts, so the whole text is never put together.
+ */
+class IncrementalDocument {
+	/**
+	 * A top-level declaration's text, with any whitespace and comments after it
+	 */
+	static final class Segment {
+		final String text;
+		final int newlines;
+		final List<ErrorReporter.Diagnostic> diagnostics;//lines relative to the segment
+		final boolean syntaxError;//the diagnostics are syntax errors, otherwise resolution errors
+
+		private Segment(String text) {
+			this.text = text;
+			int count = 0;
+			for (int i = 0; i < text.length(); i++) {
+				if (text.charAt(i) == '\n') count++;
+			}
+			this.newlines = count;
+
+			ErrorReporter reporter = new ErrorReporter(null);
+			List<Token> tokens = new Scanner(text, reporter).scanTokens();
+			List<Stmt> statements = new Parser(tokens, reporter).parse();
+			this.syntaxError = reporter.hadError;
+			if (!syntaxError) new Resolver(reporter).resolve(statements);
+			this.diagnostics = reporter.diagnostics();
+		}
+
+		private boolean endsUnfinished() {
+			for (ErrorReporter.Diagnostic diagnostic : diagnostics) {
+				if (diagnostic.atEnd()) return true;
+			}
+			return false;
+		}
+	}
+
+	private final List<Segment> segments = new ArrayList<>();
+	int reparsedChars = 0;//how much text the last change scanned and parsed again
+
+	IncrementalDocument(String text) {
+		replace(text);
+	}
+
+	/**
+	 * Replaces the whole text
+	 */
+	void replace(String text) {
+		segments.clear();
+		segments.addAll(split(text));
+		reparsedChars = text.length();
+	}
+
+	/**
+	 * Replaces a range of the text, positions as line and character, both from 0, the way editors send them
+	 */
+	void edit(int startLine, int startCharacter, int endLine, int endCharacter, String newText) {
+		int start = offset(startLine, startCharacter);
+		int end = Math.max(start, offset(endLine, endCharacter));
+
+		//the segments the range touches, both of them when it starts or ends where one segment meets the next,
+		//text added there can extend the one before or change the one after
+		int first = 0, segmentStart = 0;
+		while (first < segments.size() - 1 && segmentStart + segments.get(first).text.length() < start) {
+			segmentStart += segments.get(first).text.length();
+			first++;
+		}
+		int last = first, segmentEnd = segmentStart + segments.get(first).text.length();
+		while (last < segments.size() - 1 && segmentEnd <= end) {
+			last++;
+			segmentEnd += segments.get(last).text.length();
+		}
+
+		StringBuilder region = new StringBuilder();
+		for (int i = first; i <= last; i++) {
+			region.append(segments.get(i).text);
+		}
+		region.replace(start - segmentStart, end - segmentStart, newText);
+
+		List<Segment> pieces = split(region.toString());
+		while (pieces.get(pieces.size() - 1).endsUnfinished() && last < segments.size() - 1) {
+			last++;
+			region.append(segments.get(last).text);
+			pieces = split(region.toString());
+		}
+		reparsedChars = region.length();
+
+		segments.subList(first, last + 1).clear();
+		segments.addAll(first, pieces);
+	}
+
+	//one segment per declaration in the text, at least one
+	private static List<Segment> split(String text) {
+		Scanner scanner = new Scanner(text, new ErrorReporter(null));
+		List<Token> tokens = scanner.scanTokens();
+		int[] offsets = scanner.offsets();
+		List<Integer> ends = new ArrayList<>();
+		new Parser(tokens, new ErrorReporter(null)).parse(ends);
+
+		//a declaration the Parser recovered from can end where its text alone runs out unfinished,
+		//it is kept together with the next one rather than reporting an error at its end
+		List<Segment> pieces = new ArrayList<>();
+		int from = 0;
+		for (int i = 0; i < ends.size() - 1; i++) {//the last declaration takes the rest of the text
+			int to = offsets[ends.get(i)];
+			if (to > from) {
+				Segment piece = new Segment(text.substring(from, to));
+				if (piece.endsUnfinished()) continue;
+				pieces.add(piece);
+				from = to;
+			}
+		}
+		pieces.add(new Segment(text.substring(from)));
+		return pieces;
+	}
+
+	//a character past the end of its line is the end of the line, a line past the end of the text is the end of the text
+	private int offset(int line, int character) {
+		int lines = 0, segmentStart = 0, s = 0;
+		while (lines + segments.get(s).newlines < line) {//skip the segments ending before the line starts
+			if (s == segments.size() - 1) return segmentStart + segments.get(s).text.length();
+			lines += segments.get(s).newlines;
+			segmentStart += segments.get(s).text.length();
+			s++;
+		}
+		String text = segments.get(s).text;
+		int index = 0;
+		for (int l = lines; l < line; l++) {
+			index = text.indexOf('\n', index) + 1;
+		}
+
+		//two declarations can share a line, so it can run on into the segments after
+		int offset = segmentStart + index;
+		for (;;) {
+			int newline = text.indexOf('\n', index);
+			int rest = (newline < 0 ? text.length() : newline) - index;
+			if (character <= rest || newline >= 0 || s == segments.size() - 1) return offset + Math.min(character, rest);
+			character -= rest;
+			offset += rest;
+			text = segments.get(++s).text;
+			index = 0;
+		}
+	}
+
+	/**
+	 * The number of lines, one more than there are line breaks
+	 */
+	int lines() {
+		int lines = 1;
+		for (Segment segment : segments) {
+			lines += segment.newlines;
+		}
+		return lines;
+	}
+
+	/**
+	 * The length of a line, from 0, without its line break
+	 */
+	int lineLength(int line) {
+		return offset(line, Integer.MAX_VALUE) - offset(line, 0);
+	}
+
+	int segments() {
+		return segments.size();
+	}
+
+	/**
+	 * The document's errors, lines from 1 as the Scanner counts them. Like compiling the whole file,
+	 * resolution errors only show once there are no syntax errors, a declaration split off a broken one
+	 * would otherwise report bogus ones. Segments keep theirs, so they come back without resolving again.
+	 */
+	List<ErrorReporter.Diagnostic> diagnostics() {
+		boolean syntaxErrors = false;
+		for (Segment segment : segments) {
+			syntaxErrors |= segment.syntaxError;
+		}
+		List<ErrorReporter.Diagnostic> result = new ArrayList<>();
+		int lines = 0;
+		for (Segment segment : segments) {
+			if (segment.syntaxError == syntaxErrors) {
+				for (ErrorReporter.Diagnostic diagnostic : segment.diagnostics) {
+					result.add(new ErrorReporter.Diagnostic(diagnostic.line + lines, diagnostic.where, diagnostic.message));
+				}
+			}
+			lines += segment.newlines;
+		}
+		return result;
+	}
+}
@@ -1,8 +1,11 @@
 package com.craftinginterpreters.lox;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.craftinginterpreters.lox.Expr.Assign;
 import com.craftinginterpreters.lox.Expr.Binary;
@@ -21,6 +24,7 @@ import com.craftinginterpreters.lox.Stmt.Class;
 import com.craftinginterpreters.lox.Stmt.Expression;
 import com.craftinginterpreters.lox.Stmt.Function;
 import com.craftinginterpreters.lox.Stmt.If;
+import com.craftinginterpreters.lox.Stmt.Import;
 import com.craftinginterpreters.lox.Stmt.Print;
 import com.craftinginterpreters.lox.Stmt.Return;
 import com.craftinginterpreters.lox.Stmt.Var;
@@ -29,12 +33,49 @@ import com.craftinginterpreters.lox.Stmt.While;
 public class Interpreter implements Expr.Visitor<Object>,
 									Stmt.Visitor<Void> {
 
-	final Environment globals = new Environment();//the global environment
-	private Environment environment = globals;//the local environment, initially set to match the global environment
-	private final Map<Expr, Integer> locals = new HashMap<>();//a map of expressions and integer key/pairs. The integer is the depth 
-	//in the environment chain where the definition of the variable can be found
+	final Environment globals;//the global environment
+	private Environment environment;//the local environment, initially set to match the global environment
+	//the depth in the environment chain where a variable is defined is on the variable's node, set by the Resolver.
+	//The syntax tree is only read here, so any number of interpreters can run the same resolved program at once.
+	final OutputSink out;//where print statements go
+	final ErrorReporter reporter;//where runtime errors go
+	private final java.util.Set<LoxTask> tasks;//the unjoined tasks of this interpreter and its forks, waited for at the end of interpret
+	final LoxIsolate isolate;//the handle of this interpreter's mailbox
+	Profiler.ShadowStack callStack = null;//the Lox functions being run, only kept when profiling
+	InterpreterMetrics metrics = null;//live counters, only kept when asked for
+	AllocationTracker allocationTracker = null;//the script's, only when asked for, see trackAllocations
+	AllocationTracker allocations = null;//where allocations are recorded: the tracker while the script's own code runs, null in a module's
+	int line = 0;//when tracking allocations, the line of the last token acted on
+	Stmt.Function function = null;//when tracking allocations, the Lox function running, null at the top level
+	String module = null;//the path of the module whose code is running, null for the script's own
+	ModuleLoader modules = ModuleLoader.DEFAULT;//compiles what import statements name
+	Path directory = Paths.get("");//import paths are relative to it: the running file's directory, the working directory at the REPL
+	private final Map<Path, Boolean> imported;//the modules run in these globals, shared with forks, so each runs once
+	private boolean started = false;//whether anything has run, the globals' map mode can only be chosen before
 	
-	Interpreter() {
+	/**
+	 * @param out - where print statements go
+	 * @param reporter - where runtime errors go
+	 */
+	Interpreter(OutputSink out, ErrorReporter reporter) {
+		this(out, reporter, new LoxIsolate());
+	}
+	
+	/**
+	 * An interpreter for an isolate
+	 * @param out - where print statements go
+	 * @param reporter - where runtime errors go
+	 * @param isolate - the handle other isolates post to
+	 */
+	Interpreter(OutputSink out, ErrorReporter reporter, LoxIsolate isolate) {
+		this.globals = new Environment();
+		this.environment = globals;
+		this.out = out;
+		this.reporter = reporter;
+		this.tasks = ConcurrentHashMap.newKeySet();
+		this.isolate = isolate;
+		this.imported = new ConcurrentHashMap<>();
+		
 		/* bind a name to a LoxCallable object
 		 * implements the LoxCallable interface methods
 		 * call allows it to be called
@@ -53,17 +94,235 @@ public class Interpreter implements Expr.Visitor<Object>,
 			@Override
 			public String toString() { return "<native fn>"; }
 		});
+		
+		//timing: nanoClock() is System.nanoTime() as a number, for differences only, bench(fn, n) times fn, see LoxBench
+		globals.define("nanoClock", new NativeFunction("nanoClock", 0) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				return (double)System.nanoTime();
+			}
+		});
+		globals.define("bench", new NativeFunction("bench", 2) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				LoxCallable function = expect(arguments.get(0), LoxCallable.class, "a function");
+				if (function.arity() != 0) throw new RuntimeError("bench() expects a function with no parameters.");
+				double iterations = expect(arguments.get(1), Double.class, "a number of iterations");
+				if (iterations < 1 || iterations != Math.floor(iterations) || iterations > Integer.MAX_VALUE) {
+					throw new RuntimeError("bench() expects a positive whole number of iterations.");
+				}
+				return LoxBench.run(interpreter, function, (int)iterations);
+			}
+		});
+		
+		//tasks: spawn(fn) runs fn on a virtual thread, join(task) waits for it and returns what fn returned
+		globals.define("spawn", new NativeFunction("spawn", 1) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				LoxCallable function = expect(arguments.get(0), LoxCallable.class, "a function");
+				if (function.arity() != 0) throw new RuntimeError("spawn() expects a function with no parameters.");
+				checkConcurrent(interpreter, "spawn");
+				LoxTask task = new LoxTask(interpreter, function, interpreter.tasks);
+				task.start();
+				return task;
+			}
+		});
+		globals.define("join", new NativeFunction("join", 1) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				if (arguments.get(0) instanceof LoxIsolate) {
+					((LoxIsolate)arguments.get(0)).join();
+					return null;
+				}
+				return expect(arguments.get(0), LoxTask.class, "a task or an isolate").join();
+			}
+		});
+		
+		//channels: bounded queues between tasks, send waits while full and receive waits while empty
+		globals.define("channel", new NativeFunction("channel", 1) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				double capacity = expect(arguments.get(0), Double.class, "a capacity");
+				if (capacity < 1 || capacity != Math.floor(capacity) || capacity > Integer.MAX_VALUE) {
+					throw new RuntimeError("channel() expects a positive whole number capacity.");
+				}
+				return new LoxChannel((int)capacity);
+			}
+		});
+		globals.define("send", new NativeFunction("send", 2) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				expect(arguments.get(0), LoxChannel.class, "a channel").send(arguments.get(1));
+				return null;
+			}
+		});
+		globals.define("receive", new NativeFunction("receive", 1) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				return expect(arguments.get(0), LoxChannel.class, "a channel").receive();
+			}
+		});
+		
+		//isolates: scripts with their own globals on their own threads, talking only through mailboxes, see LoxIsolate
+		globals.define("isolate", new NativeFunction("isolate", 1) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				return LoxIsolate.start(expect(arguments.get(0), String.class, "a script path"), interpreter);
+			}
+		});
+		globals.define("post", new NativeFunction("post", 2) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				expect(arguments.get(0), LoxIsolate.class, "an isolate").post(arguments.get(1));
+				return null;
+			}
+		});
+		globals.define("message", new NativeFunction("message", 0) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				return interpreter.isolate.take();
+			}
+		});
+		
+		//collections, see LoxList, LoxMap and LoxDoubleArray for their methods
+		globals.define("List", new NativeFunction("List", 0) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				return new LoxList();
+			}
+		});
+		globals.define("Map", new NativeFunction("Map", 0) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				return new LoxMap();
+			}
+		});
+		globals.define("DoubleArray", new NativeFunction("DoubleArray", 1) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				double length = expect(arguments.get(0), Double.class, "a length");
+				if (length < 0 || length != Math.floor(length) || length > Integer.MAX_VALUE / Double.BYTES) {
+					throw new RuntimeError("DoubleArray() expects a whole number length, zero or more.");
+				}
+				return LoxDoubleArray.allocate((int)length);
+			}
+		});
+		globals.define("len", new NativeFunction("len", 1) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				Object value = arguments.get(0);
+				if (value instanceof LoxList) return (double)((LoxList)value).size();
+				if (value instanceof LoxMap) return (double)((LoxMap)value).size();
+				if (value instanceof LoxDoubleArray) return (double)((LoxDoubleArray)value).length();
+				return (double)expect(value, String.class, "a list, a map, a DoubleArray or a string").length();
+			}
+		});
+		
+		//heapStats() counts what the program holds on to, see HeapCensus for the map it returns
+		globals.define("heapStats", new NativeFunction("heapStats", 0) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				return HeapCensus.take(interpreter.globals, interpreter.environment).toMap();
+			}
+		});
+		
+		//data parallelism on the ForkJoin common pool, see LoxParallel. The source is a count n, meaning 0 to n - 1, or a list
+		globals.define("pmap", new NativeFunction("pmap", 2) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				LoxCallable function = expect(arguments.get(1), LoxCallable.class, "a function");
+				if (function.arity() != 1) throw new RuntimeError("pmap() expects a function with one parameter.");
+				checkConcurrent(interpreter, "pmap");
+				return LoxParallel.map(interpreter, LoxParallel.source(this, arguments.get(0)), function);
+			}
+		});
+		globals.define("preduce", new NativeFunction("preduce", 4) {
+			@Override
+			public Object call(Interpreter interpreter, List<Object> arguments) {
+				LoxCallable function = expect(arguments.get(1), LoxCallable.class, "a function");
+				LoxCallable combine = expect(arguments.get(2), LoxCallable.class, "a combining function");
+				if (function.arity() != 1) throw new RuntimeError("preduce() expects a function with one parameter.");
+				if (combine.arity() != 2) throw new RuntimeError("preduce() expects a combining function with two parameters.");
+				checkConcurrent(interpreter, "preduce");
+				return LoxParallel.reduce(interpreter, LoxParallel.source(this, arguments.get(0)), function, combine, arguments.get(3));
+			}
+		});
+	}
+	
+	/**
+	 * A fork for running a task: same globals, output, error reporting and task list as the parent,
+	 * its own current environment
+	 * @param parent
+	 */
+	Interpreter(Interpreter parent) {
+		this.globals = parent.globals;
+		this.environment = globals;
+		this.out = parent.out;
+		this.reporter = parent.reporter;
+		this.tasks = parent.tasks;
+		this.isolate = parent.isolate;
+		if (parent.callStack != null) this.callStack = parent.callStack.profiler.newStack("<task>", false);
+		this.metrics = parent.metrics;
+		this.allocationTracker = parent.allocationTracker;
+		this.allocations = parent.allocations;
+		this.module = parent.module;
+		this.modules = parent.modules;
+		this.directory = parent.directory;
+		this.imported = parent.imported;
+	}
+	
+	/**
+	 * Lets environments and instances use plain HashMaps, for a program TaskUse found can't start tasks.
+	 * Does nothing once something has run, the maps already made would be left as they are.
+	 */
+	void runSingleThreaded() {
+		if (!started) globals.singleThreaded();
+		if (allocationTracker != null) allocationTracker.concurrentMaps(globals.concurrent());
+	}
+	
+	//spawn, pmap and preduce run Lox code on other threads, which a single-threaded program's maps aren't safe for.
+	//TaskUse keeps this from happening, unless a module was changed to use tasks while the script ran
+	private static void checkConcurrent(Interpreter interpreter, String name) {
+		if (!interpreter.globals.concurrent()) {
+			throw new RuntimeError(name + "() can't run in a script that was started single-threaded, a module changed while it ran.");
+		}
 	}
 	
 	void interpret (List<Stmt> statements) {
+		started = true;
+		LoxEvents.Interpret event = new LoxEvents.Interpret();
+		event.begin();
 		try {
-			for (Stmt statement : statements) {
-				execute(statement);//call each statement's accept() method, passing this (which is also a Stmt.Visitor type)
-				//statement has to accept a bolus of Stmt.Visitor methods
-				//statement then calls "its" Stmt.Visitor method, inflicting an operation on itself, like printing out a Stmt.Print's value
+			try {
+				for (Stmt statement : statements) {
+					execute(statement);//call each statement's accept() method, passing this (which is also a Stmt.Visitor type)
+					//statement has to accept a bolus of Stmt.Visitor methods
+					//statement then calls "its" Stmt.Visitor method, inflicting an operation on itself, like printing out a Stmt.Print's value
+				}
+			} catch (RuntimeError error) {
+				if (metrics != null) metrics.runtimeErrors.increment();
+				out.flush();//what was printed before the error comes before it
+				reporter.runtimeError(error);
+			}
+			
+			//the script is done when its tasks are, tasks can spawn more tasks so keep going until none are left
+			while (!tasks.isEmpty()) {
+				for (LoxTask task : tasks) {
+					RuntimeError error = task.finish();
+					tasks.remove(task);
+					if (error != null) {//nobody joined the task to see its error
+						if (metrics != null) metrics.runtimeErrors.increment();
+						out.flush();
+						reporter.runtimeError(error);
+					}
+				}
+			}
+		} finally {//a StackOverflowError out of the script still ends the event
+			event.end();
+			if (event.shouldCommit()) {
+				event.statements = statements.size();
+				event.commit();
 			}
-		} catch (RuntimeError error) {
-			Lox.runtimeError(error);
 		}
 	}
 	 
@@ -72,6 +331,7 @@ public class Interpreter implements Expr.Visitor<Object>,
 		//operation defined here for its type. Binary instance will get an reference to 'this' when its accept() method is called.
 		Object left = evaluate(expr.left);
 		Object right = evaluate(expr.right);
+		if (allocations != null) allocatedBinary(expr.operator, left, right);
 		
 		switch (expr.operator.type) {
 			case MINUS:
@@ -135,6 +395,8 @@ public class Interpreter implements Expr.Visitor<Object>,
 			break;
 		case IF:
 			break;
+		case IMPORT:
+			break;
 		case LEFT_BRACE:
 			break;
 		case LEFT_PAREN:
@@ -195,6 +457,9 @@ public class Interpreter implements Expr.Visitor<Object>,
 	@Override
 	public Object visitUnaryExpr(Unary expr) {
 		Object right = evaluate(expr.right);
+		if (allocations != null && expr.operator.type == TokenType.MINUS && right instanceof Double) {
+			allocated(AllocationTracker.Kind.NUMBER, expr.operator, 0);
+		}
 		
 		switch (expr.operator.type) {
 		case BANG:
@@ -234,6 +499,8 @@ public class Interpreter implements Expr.Visitor<Object>,
 			break;
 		case IF:
 			break;
+		case IMPORT:
+			break;
 		case LEFT_BRACE:
 			break;
 		case LEFT_PAREN:
@@ -293,7 +560,7 @@ public class Interpreter implements Expr.Visitor<Object>,
 	@Override
 	public Void visitPrintStmt(Print stmt) {
 		Object value = evaluate(stmt.expression);
-		System.out.println(stringify(value));
+		out.println(value);//formatted the way stringify does, straight into the sink's buffer
 		return null;
 	}
 	
@@ -321,7 +588,7 @@ public class Interpreter implements Expr.Visitor<Object>,
 		return a.equals(b);
 	}
 	
-	private String stringify(Object object) {
+	static String stringify(Object object) {
 		if (object == null) return "nil";
 		
 		if (object instanceof Double) {
@@ -334,12 +601,62 @@ public class Interpreter implements Expr.Visitor<Object>,
 		
 		return object.toString();
 	}
+	
+	/**
+	 * stringify for what a list or map holds, which can be lists and maps, the one being printed among them
+	 * @param printing - the lists and maps being printed further out, see LoxList.appendTo
+	 */
+	static void stringify(Object object, StringBuilder text, java.util.Set<Object> printing) {
+		if (object instanceof LoxList) {
+			((LoxList)object).appendTo(text, printing);
+		} else if (object instanceof LoxMap) {
+			((LoxMap)object).appendTo(text, printing);
+		} else {
+			text.append(stringify(object));
+		}
+	}
 
+	/**
+	 * Attributes this interpreter's allocations to the script's lines from now on, see AllocationTracker
+	 */
+	void trackAllocations(AllocationTracker tracker) {
+		allocationTracker = tracker;
+		allocations = module == null ? tracker : null;
+		tracker.concurrentMaps(globals.concurrent());
+	}
+	
+	/**
+	 * Records an allocation at token's line, which becomes the current line
+	 * @param kind
+	 * @param token - what the allocation is for
+	 * @param extraBytes - on top of the kind's size
+	 */
+	void allocated(AllocationTracker.Kind kind, Token token, int extraBytes) {
+		line = token.line;
+		allocations.record(kind, line, function, extraBytes);
+	}
+	
+	//what the operator is about to box or concatenate
+	private void allocatedBinary(Token operator, Object left, Object right) {
+		switch (operator.type) {
+			case MINUS: case SLASH: case STAR: case PLUS:
+				if (left instanceof Double && right instanceof Double) {
+					allocated(AllocationTracker.Kind.NUMBER, operator, 0);
+				} else if (operator.type == TokenType.PLUS && left instanceof String && right instanceof String) {
+					allocated(AllocationTracker.Kind.STRING, operator, ((String)left).length() + ((String)right).length());
+				}
+				break;
+			default:
+				line = operator.line;//comparisons give cached Booleans
+		}
+	}
+	
 	private Object evaluate(Expr expr) {
 		return expr.accept(this);
 	}
 	
 	private void execute(Stmt stmt) {
+		if (metrics != null) metrics.statements.increment();
 		stmt.accept(this);
 		/*
 		call the Ast object's accept() method, 
@@ -349,17 +666,6 @@ public class Interpreter implements Expr.Visitor<Object>,
 		*/
 	}
 	
-	/**
-	 * is passed an Expr subclass object and depth
-	 * puts the syntax tree node in the locals map along with the distance between where it is used and where it is defined
-	 * depth is the distance along the environment chain 
-	 * @param expr
-	 * @param depth
-	 */
-	void resolve(Expr expr, int depth) {
-		locals.put(expr, depth);
-	}
-
 	@Override
 	public Void visitVarStmt(Var stmt) {
 		Object value = null;
@@ -367,6 +673,7 @@ public class Interpreter implements Expr.Visitor<Object>,
 			value = evaluate(stmt.initializer);
 		}
 		
+		if (allocations != null) allocated(AllocationTracker.Kind.VARIABLE, stmt.name, 0);
 		environment.define(stmt.name.lexeme, value);
 		return null;
 	}
@@ -377,25 +684,67 @@ public class Interpreter implements Expr.Visitor<Object>,
 	 */
 	@Override
 	public Object visitVariableExpr(Variable expr) {
-		return lookUpVariable(expr.name, expr);
+		if (allocations != null) line = expr.name.line;
+		return lookUpVariable(expr.name, expr.depth);
 	}
 
-	private Object lookUpVariable(Token name, Expr expr) {
-		Integer distance = locals.get(expr);
-		if (distance != null) {
+	private Object lookUpVariable(Token name, int distance) {
+		if (distance >= 0) {
 			return environment.getAt(distance, name.lexeme);//go to the environment at distance, where we determined the variable is defined
 			//get the value of the variable there
 		} else {
-			return globals.get(name);//not in the map, so the variable is a global
+			return globals.get(name);//not resolved to a local, so the variable is a global
+		}
+	}
+
+	/**
+	 * Runs the module's top level in the globals, the first time it is imported into them.
+	 * It is marked before it runs, so a module importing one that is still running, a cycle, goes on without waiting.
+	 * One that can't be read or compiled is unmarked again, so importing it once it is fixed, at the REPL say, runs it.
+	 */
+	@Override
+	public Void visitImportStmt(Import stmt) {
+		Path path = ModuleLoader.resolve(directory, stmt.path);
+		if (imported.putIfAbsent(path, Boolean.TRUE) != null) return null;
+		
+		ModuleLoader.Module module = modules.load(path);
+		if (!module.found) {
+			imported.remove(path);//not run, so a later import, once the file is there, runs it
+			throw new RuntimeError(stmt.keyword, "Could not read module " + stmt.path + ".");
+		}
+		if (module.statements == null) {
+			imported.remove(path);
+			out.flush();//what was printed before the import comes before its errors
+			reporter.moduleErrors(path, module.errors);
+			throw new RuntimeError(stmt.keyword, "Could not compile module " + stmt.path + ".");
+		}
+		
+		Path importer = directory;
+		String importing = this.module;
+		AllocationTracker tracker = allocations;
+		try {
+			directory = path.getParent();
+			this.module = path.toString();
+			allocations = null;//the tracker's lines are the script's, a module's would be counted against them
+			executeBlock(module.statements, globals);
+		} catch (RuntimeError error) {
+			error.place(this.module);//raised by the module's top level, unless a function placed it already
+			throw error;
+		} finally {
+			directory = importer;
+			this.module = importing;
+			allocations = tracker;
 		}
+		return null;
 	}
 
 	@Override
 	public Object visitAssignExpr(Assign expr) {
 		Object value = evaluate(expr.value);
+		if (allocations != null) line = expr.name.line;
 		
-		Integer distance = locals.get(expr);
-		if (distance != null) {
+		int distance = expr.depth;
+		if (distance >= 0) {
 			environment.assignAt(distance, expr.name, value);
 		} else {
 			globals.assign(expr.name, value);//otherwise put the name/value pair in the global environment
@@ -406,6 +755,8 @@ public class Interpreter implements Expr.Visitor<Object>,
 
 	@Override
 	public Void visitBlockStmt(Block stmt) {
+		if (metrics != null) metrics.environments.increment();
+		if (allocations != null) allocations.record(AllocationTracker.Kind.ENVIRONMENT, line, function, 0);//no token of its own, the line of the last one
 		executeBlock(stmt.statements, new Environment(environment));
 		return null;
 	}
@@ -484,12 +835,19 @@ public class Interpreter implements Expr.Visitor<Object>,
 		if (arguments.size() != function.arity()) {
 			throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
 		}
-		return function.call(this, arguments);//The Java representation of any Lox object that can be called like a function will implement the LoxCallable interface.
+		if (allocations != null) allocated(AllocationTracker.Kind.ARGUMENTS, expr.paren, 0);//the call's environment, instance or bound initializer are counted at this line too
+		try {
+			return function.call(this, arguments);//The Java representation of any Lox object that can be called like a function will implement the LoxCallable interface.
+		} catch (RuntimeError error) {
+			if (error.token != null) throw error;
+			throw new RuntimeError(expr.paren, error.getMessage());//a native function failed, report it at the call
+		}
 	}
 
 	@Override
 	public Void visitFunctionStmt(Function stmt) {
-		LoxFunction function = new LoxFunction(stmt, environment, false);//false = not in an initializer
+		if (allocations != null) allocated(AllocationTracker.Kind.CLOSURE, stmt.name, 0);
+		LoxFunction function = new LoxFunction(stmt, environment, false, module);//false = not in an initializer
 		//give the function the current environment - the one that is active when the function is declared - the closure
 		//we got a syntax tree node function instance, but that doesn't have the mechanics for calling it
 		//wrap it in a LoxFunction which has call(), etc.
@@ -502,6 +860,8 @@ public class Interpreter implements Expr.Visitor<Object>,
 		Object value = null;
 		if (stmt.value != null) value = evaluate(stmt.value);
 		
+		if (metrics != null) metrics.returns.increment();
+		if (allocations != null) allocated(AllocationTracker.Kind.RETURN, stmt.keyword, 0);
 		throw new ReturnException(value);//return means leave the current scope and hand execution back to the caller
 		//so use the Java Exception mechanism to bubble up to where the function was called
 	}
@@ -526,6 +886,8 @@ public class Interpreter implements Expr.Visitor<Object>,
 		environment.define(stmt.name.lexeme, null);//in the environment, bind the class name to null
 		
 		if (stmt.superclass != null) {
+			if (metrics != null) metrics.environments.increment();
+			if (allocations != null) allocated(AllocationTracker.Kind.ENVIRONMENT, stmt.name, 0);
 			environment = new Environment(environment);//make a new child environment with the old current environment as its parent, 
 			//this is now the environment we work with
 			environment.define("super", superclass);//bind "super" to the subclass in that environment
@@ -533,7 +895,7 @@ public class Interpreter implements Expr.Visitor<Object>,
 		
 		Map<String, LoxFunction> methods = new HashMap<>();
 		for (Stmt.Function method : stmt.methods ) {
-			LoxFunction function = new LoxFunction(method, environment, method.name.lexeme.equals("init"));//class methods get the environment from above with
+			LoxFunction function = new LoxFunction(method, environment, method.name.lexeme.equals("init"), module);//class methods get the environment from above with
 			//"super" bound to the superclass, as their closure
 			methods.put(method.name.lexeme, function);
 		}
@@ -558,7 +920,11 @@ public class Interpreter implements Expr.Visitor<Object>,
 	public Object visitGetExpr(Get expr) {
 		Object object = evaluate(expr.object);
 		if (object instanceof LoxInstance) {
-			return ((LoxInstance) object).get(expr.name);//got back Object type from evaluate, cast it to LoxInstance since it is one
+			if (allocations != null) line = expr.name.line;//a method comes back bound, counted at this line
+			return ((LoxInstance) object).get(expr.name, this);//got back Object type from evaluate, cast it to LoxInstance since it is one
+		}
+		if (object instanceof NativeObject) {
+			return ((NativeObject) object).get(expr.name);//a list or a map, its methods come back bound to it
 		}
 		
 		throw new RuntimeError(expr.name, "Only instances have properties.");
@@ -573,7 +939,8 @@ public class Interpreter implements Expr.Visitor<Object>,
 		}
 		
 		Object value = evaluate(expr.value);
-		((LoxInstance)object).set(expr.name, value);
+		boolean added = ((LoxInstance)object).set(expr.name, value);
+		if (added && allocations != null) allocated(AllocationTracker.Kind.FIELD, expr.name, 0);
 		return value;
 	}
 
@@ -581,14 +948,14 @@ public class Interpreter implements Expr.Visitor<Object>,
 
 	@Override
 	public Object visitThisExpr(This expr) {
-		return lookUpVariable(expr.keyword, expr);
+		return lookUpVariable(expr.keyword, expr.depth);
 	}
 
 	/**
 	 * @param Expr.Super that has the "super" keyword and a method name, the super.method we want
 	 * @return LoxFunction of the method on super that we want. It has a closure that has a bind for 'this'
 	 *We see a super expression. It has the keyword "super" and the name of the method.
-	 *We go to the locals HashMap and giving that expression, get back the depth from the current environment to where "super" is bound,
+	 *The expression holds the depth from the current environment to where "super" is bound,
 	 *"super" was bound in the environment where the class definition that used the superclass was seen
 	 *We get the object bound to "super" in that distant environment and cast it to a LoxClass
 	 *We need to create a LoxInstance representing 'this'
@@ -598,7 +965,7 @@ public class Interpreter implements Expr.Visitor<Object>,
 	 */
 	@Override
 	public Object visitSuperExpr(Super expr) {
-		int distance = locals.get(expr);//expr is the key in the locals Hashmap, get returns the value, which is the depth.
+		int distance = expr.depth;//set by the Resolver
 		//depth is the environments distance between where the variable is used and where it is defined
 		LoxClass superclass = (LoxClass)environment.getAt(distance, "super");//gets the environment distance jumps up the chain and gets the object for the "super" key
 		
@@ -612,6 +979,7 @@ public class Interpreter implements Expr.Visitor<Object>,
 			throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
 		}
 		
-		return method.bind(object);
+		if (allocations != null) line = expr.method.line;
+		return method.bind(object, this);
 	}
 }
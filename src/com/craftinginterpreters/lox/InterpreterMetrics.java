@@ -0,0 +1,112 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live counters for an interpreter, readable over JMX as com.craftinginterpreters.lox:type=Interpreter,name=...
+ * An Interpreter counts into the metrics it was given, and its tasks, pmap pieces and isolates count into the same ones,
+ * so one InterpreterMetrics can also be shared by many runs of an embedded script to watch them together.
+ * Counters are LongAdders, threads bumping the same counter don't contend on one memory word.
+ * An interpreter without metrics, the default, only pays a null check at each counting site.
+ *
+ * InterpreterMetrics metrics = InterpreterMetrics.register("rules");
+ * script.run(out, err, metrics);
+ * metrics.unregister();//when done
+ */
+public final class InterpreterMetrics implements InterpreterMetricsMBean {
+	final LongAdder statements = new LongAdder();//Interpreter.execute
+	final LongAdder calls = new LongAdder();//LoxFunction.call
+	final LongAdder environments = new LongAdder();//every new Environment, blocks, calls, bound methods and superclass scopes
+	final LongAdder boundMethods = new LongAdder();//LoxFunction.bind
+	final LongAdder instances = new LongAdder();//LoxClass.call
+	final LongAdder returns = new LongAdder();//ReturnException thrown
+	final LongAdder runtimeErrors = new LongAdder();//runtime errors reported
+
+	private ObjectName name;//set while registered
+
+	public InterpreterMetrics() {
+	}
+
+	/**
+	 * Creates metrics and registers them with the platform MBean server
+	 * @param name - the name key of the ObjectName, unique among registered interpreters
+	 * @throws IllegalStateException when the name is taken or not a valid ObjectName value
+	 */
+	public static InterpreterMetrics register(String name) {
+		InterpreterMetrics metrics = new InterpreterMetrics();
+		try {
+			ObjectName objectName = new ObjectName("com.craftinginterpreters.lox", "type", "Interpreter");
+			objectName = new ObjectName(objectName + ",name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+			metrics.name = objectName;
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not register interpreter metrics " + name + ".", e);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Removes the MBean, the counters keep working
+	 */
+	public void unregister() {
+		if (name == null) return;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.unregisterMBean(name);
+		} catch (JMException ignored) {
+			//already gone
+		}
+		name = null;
+	}
+
+	@Override
+	public long getStatementsExecuted() {
+		return statements.sum();
+	}
+
+	@Override
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	@Override
+	public long getEnvironmentsAllocated() {
+		return environments.sum();
+	}
+
+	@Override
+	public long getBoundMethodsCreated() {
+		return boundMethods.sum();
+	}
+
+	@Override
+	public long getInstancesCreated() {
+		return instances.sum();
+	}
+
+	@Override
+	public long getReturns() {
+		return returns.sum();
+	}
+
+	@Override
+	public long getRuntimeErrors() {
+		return runtimeErrors.sum();
+	}
+
+	@Override
+	public void reset() {
+		statements.reset();
+		calls.reset();
+		environments.reset();
+		boundMethods.reset();
+		instances.reset();
+		returns.reset();
+		runtimeErrors.reset();
+	}
+}
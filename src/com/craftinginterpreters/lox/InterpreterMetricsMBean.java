@@ -0,0 +1,22 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * The JMX view of InterpreterMetrics. Every attribute is a count since the metrics were created or last reset.
+ */
+public interface InterpreterMetricsMBean {
+	long getStatementsExecuted();
+
+	long getCalls();
+
+	long getEnvironmentsAllocated();
+
+	long getBoundMethodsCreated();
+
+	long getInstancesCreated();
+
+	long getReturns();
+
+	long getRuntimeErrors();
+
+	void reset();
+}
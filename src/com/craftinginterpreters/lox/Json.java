@@ -0,0 +1,214 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the language server's messages, the interpreter has no dependencies to pull a library from.
+ * Objects are Maps, arrays Lists, numbers Doubles, and true, false and null Booleans and null.
+ */
+class Json {
+	private final String text;
+	private int current = 0;
+
+	private Json(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * @throws IllegalArgumentException when the text isn't one JSON value
+	 */
+	static Object parse(String text) {
+		Json json = new Json(text);
+		Object value = json.value();
+		json.skipWhitespace();
+		if (json.current != text.length()) throw json.error("Unexpected text after the value");
+		return value;
+	}
+
+	static String write(Object value) {
+		StringBuilder out = new StringBuilder();
+		write(value, out);
+		return out.toString();
+	}
+
+	private Object value() {
+		skipWhitespace();
+		if (current >= text.length()) throw error("Unexpected end");
+		char c = text.charAt(current);
+		switch (c) {
+			case '{': return object();
+			case '[': return array();
+			case '"': return string();
+			case 't': return literal("true", Boolean.TRUE);
+			case 'f': return literal("false", Boolean.FALSE);
+			case 'n': return literal("null", null);
+			default: return number();
+		}
+	}
+
+	private Map<String, Object> object() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		current++;//{
+		skipWhitespace();
+		if (peek() == '}') {
+			current++;
+			return result;
+		}
+		for (;;) {
+			skipWhitespace();
+			String key = string();
+			skipWhitespace();
+			expect(':');
+			result.put(key, value());
+			skipWhitespace();
+			if (peek() == ',') {
+				current++;
+			} else {
+				expect('}');
+				return result;
+			}
+		}
+	}
+
+	private List<Object> array() {
+		List<Object> result = new ArrayList<>();
+		current++;//[
+		skipWhitespace();
+		if (peek() == ']') {
+			current++;
+			return result;
+		}
+		for (;;) {
+			result.add(value());
+			skipWhitespace();
+			if (peek() == ',') {
+				current++;
+			} else {
+				expect(']');
+				return result;
+			}
+		}
+	}
+
+	private String string() {
+		expect('"');
+		StringBuilder result = new StringBuilder();
+		for (;;) {
+			if (current >= text.length()) throw error("Unterminated string");
+			char c = text.charAt(current++);
+			if (c == '"') return result.toString();
+			if (c != '\\') {
+				result.append(c);
+				continue;
+			}
+			if (current >= text.length()) throw error("Unterminated string");
+			char escape = text.charAt(current++);
+			switch (escape) {
+				case 'b': result.append('\b'); break;
+				case 'f': result.append('\f'); break;
+				case 'n': result.append('\n'); break;
+				case 'r': result.append('\r'); break;
+				case 't': result.append('\t'); break;
+				case 'u':
+					if (current + 4 > text.length()) throw error("Bad escape");
+					result.append((char)Integer.parseInt(text.substring(current, current + 4), 16));
+					current += 4;
+					break;
+				default: result.append(escape);//" \ and /
+			}
+		}
+	}
+
+	private Object literal(String word, Object value) {
+		if (!text.startsWith(word, current)) throw error("Unexpected character");
+		current += word.length();
+		return value;
+	}
+
+	private Double number() {
+		int start = current;
+		while (current < text.length() && "+-0123456789.eE".indexOf(text.charAt(current)) >= 0) current++;
+		if (start == current) throw error("Unexpected character");
+		return Double.parseDouble(text.substring(start, current));
+	}
+
+	private void skipWhitespace() {
+		while (current < text.length() && Character.isWhitespace(text.charAt(current))) current++;
+	}
+
+	private char peek() {
+		return current < text.length() ? text.charAt(current) : '\0';
+	}
+
+	private void expect(char c) {
+		if (peek() != c) throw error("Expected '" + c + "'");
+		current++;
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at " + current + ".");
+	}
+
+	private static void write(Object value, StringBuilder out) {
+		if (value == null) {
+			out.append("null");
+		} else if (value instanceof String) {
+			writeString((String)value, out);
+		} else if (value instanceof Number) {
+			double number = ((Number)value).doubleValue();
+			if (number == Math.rint(number) && Math.abs(number) < 1e15) {
+				out.append((long)number);
+			} else {
+				out.append(number);
+			}
+		} else if (value instanceof Boolean) {
+			out.append(value);
+		} else if (value instanceof Map) {
+			out.append('{');
+			boolean first = true;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+				if (!first) out.append(',');
+				first = false;
+				writeString(entry.getKey().toString(), out);
+				out.append(':');
+				write(entry.getValue(), out);
+			}
+			out.append('}');
+		} else if (value instanceof List) {
+			out.append('[');
+			boolean first = true;
+			for (Object element : (List<?>)value) {
+				if (!first) out.append(',');
+				first = false;
+				write(element, out);
+			}
+			out.append(']');
+		} else {
+			throw new IllegalArgumentException("Can't write a " + value.getClass().getSimpleName() + " as JSON.");
+		}
+	}
+
+	private static void writeString(String value, StringBuilder out) {
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					if (c < 0x20) {
+						out.append(String.format("\\u%04x", (int)c));
+					} else {
+						out.append(c);
+					}
+			}
+		}
+		out.append('"');
+	}
+}
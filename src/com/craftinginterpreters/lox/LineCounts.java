@@ -0,0 +1,322 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * jlox --line-counts: counts how many times every statement and every call site runs and prints the counts
+ * next to the source, lines that have statements but never ran are marked #####, so it doubles as a coverage report.
+ *
+ * The counting lives in an instrumented copy of the program: instrument rebuilds the tree with every statement
+ * and every call wrapped in a counting node that bumps its counter and passes the visitor on to the node it wraps.
+ * The Interpreter never knows, and a program that isn't instrumented pays nothing.
+ * Leaf expressions, and so the resolved depths on them, are shared with the original, which is left unchanged.
+ *
+ * A node is counted on the line of its first token. A statement without one, print "hi"; for instance,
+ * takes the line of the token before it.
+ */
+class LineCounts implements Stmt.Visitor<Stmt>, Expr.Visitor<Expr> {
+	private final List<Counted> counters = new ArrayList<>();
+	private int lastLine = 1;//the line of the last token passed, for nodes without a token of their own
+
+	/**
+	 * The program with counting nodes, ready to interpret
+	 */
+	List<Stmt> instrument(List<Stmt> statements) {
+		return copy(statements);
+	}
+
+	/**
+	 * Every source line with how often it ran and how many calls were made from it
+	 * @param source - the script's text
+	 * @param out
+	 */
+	void report(String source, PrintStream out) {
+		String[] lines = source.split("\r?\n", -1);
+		long[] runs = new long[lines.length + 2];
+		long[] calls = new long[lines.length + 2];
+		boolean[] hasStatement = new boolean[lines.length + 2];
+		for (Counted counter : counters) {
+			int line = Math.min(counter.line, lines.length + 1);
+			long count = counter.count.sum();
+			if (counter.call) {
+				calls[line] += count;
+			} else {
+				hasStatement[line] = true;
+				runs[line] = Math.max(runs[line], count);//several statements on a line, the line ran as often as the busiest
+			}
+		}
+
+		out.printf("%10s %10s %5s | %s%n", "runs", "calls", "line", "source");
+		int covered = 0, total = 0;
+		for (int i = 1; i <= lines.length; i++) {
+			String count = "-";
+			if (hasStatement[i]) {
+				total++;
+				if (runs[i] > 0) covered++;
+				count = runs[i] > 0 ? Long.toString(runs[i]) : "#####";
+			}
+			out.printf("%10s %10s %5d | %s%n", count, calls[i] > 0 ? Long.toString(calls[i]) : "", i, lines[i - 1]);
+		}
+		out.printf("%d of %d lines with statements ran (%.1f%%)%n", covered, total, total == 0 ? 100.0 : 100.0 * covered / total);
+	}
+
+	/**
+	 * A statement or call site's counter
+	 */
+	private static final class Counted {
+		final int line;
+		final boolean call;
+		final LongAdder count = new LongAdder();//tasks may run the same node at once
+
+		Counted(int line, boolean call) {
+			this.line = line;
+			this.call = call;
+		}
+	}
+
+	/**
+	 * The counting variant of a statement
+	 */
+	static final class CountedStmt extends Stmt {
+		private final Stmt statement;
+		private final LongAdder count;
+
+		private CountedStmt(Stmt statement, LongAdder count) {
+			this.statement = statement;
+			this.count = count;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			count.increment();
+			return statement.accept(visitor);
+		}
+	}
+
+	/**
+	 * The counting variant of a call
+	 */
+	static final class CountedCall extends Expr {
+		private final Expr.Call call;
+		private final LongAdder count;
+
+		private CountedCall(Expr.Call call, LongAdder count) {
+			this.call = call;
+			this.count = count;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			count.increment();
+			return call.accept(visitor);
+		}
+	}
+
+	private List<Stmt> copy(List<Stmt> statements) {
+		List<Stmt> result = new ArrayList<>(statements.size());
+		for (Stmt statement : statements) {
+			result.add(copy(statement));
+		}
+		return result;
+	}
+
+	private Stmt copy(Stmt stmt) {
+		if (stmt == null) return null;
+		Counted counter = new Counted(line(stmt), false);//before the copy, which moves lastLine on past the statement
+		counters.add(counter);
+		return new CountedStmt(stmt.accept(this), counter.count);
+	}
+
+	private Expr copy(Expr expr) {
+		return expr == null ? null : expr.accept(this);
+	}
+
+	private Stmt.Function copyFunction(Stmt.Function stmt) {
+		passed(stmt.name);
+		return new Stmt.Function(stmt.name, stmt.params, copy(stmt.body));
+	}
+
+	private void passed(Token token) {
+		lastLine = token.line;
+	}
+
+	//the line of the statement's first token, or the last line passed when it has none
+	private int line(Stmt stmt) {
+		int line = -1;
+		if (stmt instanceof Stmt.Class) line = ((Stmt.Class)stmt).name.line;
+		else if (stmt instanceof Stmt.Function) line = ((Stmt.Function)stmt).name.line;
+		else if (stmt instanceof Stmt.Return) line = ((Stmt.Return)stmt).keyword.line;
+		else if (stmt instanceof Stmt.Var) line = ((Stmt.Var)stmt).name.line;
+		else if (stmt instanceof Stmt.Import) line = ((Stmt.Import)stmt).keyword.line;
+		else if (stmt instanceof Stmt.Expression) line = line(((Stmt.Expression)stmt).expression);
+		else if (stmt instanceof Stmt.Print) line = line(((Stmt.Print)stmt).expression);
+		else if (stmt instanceof Stmt.If) line = line(((Stmt.If)stmt).condition);
+		else if (stmt instanceof Stmt.While) line = line(((Stmt.While)stmt).condition);
+		else if (stmt instanceof Stmt.Block && !((Stmt.Block)stmt).statements.isEmpty()) line = line(((Stmt.Block)stmt).statements.get(0));
+		return line < 0 ? lastLine : line;
+	}
+
+	//the line of the expression's leftmost token, -1 when it has none
+	private int line(Expr expr) {
+		if (expr instanceof Expr.Assign) return ((Expr.Assign)expr).name.line;
+		if (expr instanceof Expr.Variable) return ((Expr.Variable)expr).name.line;
+		if (expr instanceof Expr.This) return ((Expr.This)expr).keyword.line;
+		if (expr instanceof Expr.Super) return ((Expr.Super)expr).keyword.line;
+		if (expr instanceof Expr.Unary) return ((Expr.Unary)expr).operator.line;
+		if (expr instanceof Expr.Grouping) return line(((Expr.Grouping)expr).expression);
+		if (expr instanceof Expr.Binary) return firstOf(line(((Expr.Binary)expr).left), ((Expr.Binary)expr).operator);
+		if (expr instanceof Expr.Logical) return firstOf(line(((Expr.Logical)expr).left), ((Expr.Logical)expr).operator);
+		if (expr instanceof Expr.Call) return firstOf(line(((Expr.Call)expr).callee), ((Expr.Call)expr).paren);
+		if (expr instanceof Expr.Get) return firstOf(line(((Expr.Get)expr).object), ((Expr.Get)expr).name);
+		if (expr instanceof Expr.Set) return firstOf(line(((Expr.Set)expr).object), ((Expr.Set)expr).name);
+		return -1;//a literal
+	}
+
+	private static int firstOf(int line, Token token) {
+		return line >= 0 ? line : token.line;
+	}
+
+	@Override
+	public Stmt visitBlockStmt(Stmt.Block stmt) {
+		return new Stmt.Block(copy(stmt.statements));
+	}
+
+	@Override
+	public Stmt visitClassStmt(Stmt.Class stmt) {
+		passed(stmt.name);
+		List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+		for (Stmt.Function method : stmt.methods) {
+			methods.add(copyFunction(method));//methods stay Stmt.Functions, the Interpreter makes LoxFunctions of them
+		}
+		return new Stmt.Class(stmt.name, stmt.superclass, methods);
+	}
+
+	@Override
+	public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+		return new Stmt.Expression(copy(stmt.expression));
+	}
+
+	@Override
+	public Stmt visitFunctionStmt(Stmt.Function stmt) {
+		return copyFunction(stmt);
+	}
+
+	@Override
+	public Stmt visitIfStmt(Stmt.If stmt) {
+		return new Stmt.If(copy(stmt.condition), copy(stmt.thenBranch), copy(stmt.elseBranch));
+	}
+
+	@Override
+	public Stmt visitWhileStmt(Stmt.While stmt) {
+		return new Stmt.While(copy(stmt.condition), copy(stmt.body));
+	}
+
+	@Override
+	public Stmt visitPrintStmt(Stmt.Print stmt) {
+		return new Stmt.Print(copy(stmt.expression));
+	}
+
+	@Override
+	public Stmt visitReturnStmt(Stmt.Return stmt) {
+		passed(stmt.keyword);
+		return new Stmt.Return(stmt.keyword, copy(stmt.value));
+	}
+
+	@Override
+	public Stmt visitVarStmt(Stmt.Var stmt) {
+		passed(stmt.name);
+		return new Stmt.Var(stmt.name, copy(stmt.initializer));
+	}
+
+	@Override
+	public Stmt visitImportStmt(Stmt.Import stmt) {
+		passed(stmt.keyword);
+		return stmt;//nothing under it to count, the module's own statements aren't instrumented
+	}
+
+	@Override
+	public Expr visitAssignExpr(Expr.Assign expr) {
+		passed(expr.name);
+		Expr.Assign copy = new Expr.Assign(expr.name, copy(expr.value));
+		copy.depth = expr.depth;
+		return copy;
+	}
+
+	@Override
+	public Expr visitBinaryExpr(Expr.Binary expr) {
+		Expr left = copy(expr.left);
+		passed(expr.operator);
+		return new Expr.Binary(left, expr.operator, copy(expr.right));
+	}
+
+	@Override
+	public Expr visitCallExpr(Expr.Call expr) {
+		Counted counter = new Counted(firstOf(line(expr), expr.paren), true);
+		counters.add(counter);
+		Expr callee = copy(expr.callee);
+		List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+		for (Expr argument : expr.arguments) {
+			arguments.add(copy(argument));
+		}
+		passed(expr.paren);//the closing parenthesis
+		return new CountedCall(new Expr.Call(callee, expr.paren, arguments), counter.count);
+	}
+
+	@Override
+	public Expr visitGetExpr(Expr.Get expr) {
+		Expr object = copy(expr.object);
+		passed(expr.name);
+		return new Expr.Get(object, expr.name);
+	}
+
+	@Override
+	public Expr visitGroupingExpr(Expr.Grouping expr) {
+		return new Expr.Grouping(copy(expr.expression));
+	}
+
+	@Override
+	public Expr visitLiteralExpr(Expr.Literal expr) {
+		return expr;
+	}
+
+	@Override
+	public Expr visitLogicalExpr(Expr.Logical expr) {
+		Expr left = copy(expr.left);
+		passed(expr.operator);
+		return new Expr.Logical(left, expr.operator, copy(expr.right));
+	}
+
+	@Override
+	public Expr visitSetExpr(Expr.Set expr) {
+		Expr object = copy(expr.object);
+		passed(expr.name);
+		return new Expr.Set(object, expr.name, copy(expr.value));
+	}
+
+	@Override
+	public Expr visitSuperExpr(Expr.Super expr) {
+		passed(expr.method);
+		return expr;
+	}
+
+	@Override
+	public Expr visitThisExpr(Expr.This expr) {
+		passed(expr.keyword);
+		return expr;
+	}
+
+	@Override
+	public Expr visitUnaryExpr(Expr.Unary expr) {
+		passed(expr.operator);
+		return new Expr.Unary(expr.operator, copy(expr.right));
+	}
+
+	@Override
+	public Expr visitVariableExpr(Expr.Variable expr) {
+		passed(expr.name);
+		return expr;
+	}
+}
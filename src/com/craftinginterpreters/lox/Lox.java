@@ -4,31 +4,183 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
 public class Lox {
-	private static final Interpreter interpreter = new Interpreter();
-	static boolean hadError = false;
-	static boolean hadRuntimeError = false;
+	static final String VERSION = "1.0";//part of the .loxc cache key
+	
+	//options, only set by main before anything runs
+	private static boolean fusedFrontEnd = false;//resolve while parsing instead of in a separate Resolver pass
+	private static boolean useCache = true;//load and store .loxc files in runFile, in the per-user cache directory, see ProgramCache
+	private static boolean compactAst = false;//keep the program as the smaller tree AstCompactor makes
+	private static boolean asyncOutput = false;//write printed output on a thread of its own
+	private static Path profile = null;//where runFile writes collapsed stacks when profiling
+	private static boolean lineCounts = false;//count statement and call executions per line and print them after the run
+	private static boolean jmx = false;//register the interpreter's metrics as an MBean
+	private static boolean heapReport = false;//print a census of what the globals hold on to after the run
+	private static boolean allocations = false;//attribute the interpreter's allocations to source lines and print them after the run
+	private static ModuleLoader modules = ModuleLoader.DEFAULT;//compiles and keeps imported modules, built from the options above
 	
 	public static void main(String[] args) throws IOException {
-		if (args.length > 1) {
-			System.out.println("Usage: jlox [script]");
-			System.exit(64);
-		} else if (args.length == 1){
-			runFile(args[0]);//when given one argument the interpreter will process a source code file
+		String script = null;
+		boolean server = false;
+		boolean languageServer = false;
+		boolean client = false;
+		Path socket = LoxServer.defaultSocket();
+		boolean map = false;
+		Path input = null;
+		String function = "map";
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--fused")) {
+				fusedFrontEnd = true;
+			} else if (arg.equals("--no-cache")) {
+				useCache = false;
+			} else if (arg.equals("--compact")) {
+				compactAst = true;
+			} else if (arg.equals("--async-output")) {
+				asyncOutput = true;
+			} else if (arg.equals("--jmx")) {
+				jmx = true;
+			} else if (arg.equals("--heap-report")) {
+				heapReport = true;
+			} else if (arg.equals("--allocations")) {
+				allocations = true;
+			} else if (arg.equals("--line-counts")) {
+				lineCounts = true;
+			} else if (arg.equals("--profile")) {
+				if (profile == null) profile = Paths.get("lox-profile.folded");
+			} else if (arg.equals("--profile-output") && i + 1 < args.length) {
+				profile = Paths.get(args[++i]);
+			} else if (arg.equals("--lsp")) {
+				languageServer = true;
+			} else if (arg.equals("--server")) {
+				server = true;
+			} else if (arg.equals("--client")) {
+				client = true;
+			} else if (arg.equals("--socket") && i + 1 < args.length) {
+				socket = Paths.get(args[++i]);
+			} else if (arg.equals("--map")) {
+				map = true;
+			} else if (arg.equals("--input") && i + 1 < args.length) {
+				input = Paths.get(args[++i]);
+			} else if (arg.equals("--function") && i + 1 < args.length) {
+				function = args[++i];
+			} else if (script == null && !arg.startsWith("--")) {
+				script = arg;
+			} else {
+				usage();
+			}
+		}
+		
+		if (map != (input != null)) usage();
+		modules = new ModuleLoader(fusedFrontEnd, useCache, compactAst);
+		
+		if (languageServer) {
+			if (script != null || server || client || map) usage();
+			System.exit(new LoxLanguageServer(System.in, System.out).serve());//diagnostics for an editor, over stdio
+		} else if (server) {
+			if (script != null || client || map) usage();
+			LoxServer.serve(socket);//keep a warmed up interpreter process resident and run scripts sent to it
+		} else if (client) {
+			if (script == null || map) usage();
+			System.exit(LoxServer.runRemote(socket, Paths.get(script)));//have the server run the script
+		} else if (map) {
+			if (script == null) usage();
+			mapFile(script, input, function);//call the script's function for every line of the input
+		} else if (script != null) {
+			runFile(script);//when given a script argument the interpreter will process a source code file
 		} else {
-			runPrompt();//when given no arguments the interpreter acts as a REPL
+			runPrompt();//when given no script the interpreter acts as a REPL
 		}
 	}
+	
+	private static void usage() {
+		System.out.println("Usage: jlox [--fused] [--no-cache] [--compact] [--async-output] [--profile [--profile-output file]] [--line-counts] [--allocations] [--heap-report] [--jmx] [script]");
+		System.out.println("       jlox --lsp");
+		System.out.println("       jlox --server [--socket path]");
+		System.out.println("       jlox --client [--socket path] script");
+		System.out.println("       jlox --map [--function name] script --input file");
+		System.exit(64);
+	}
 
 	private static void runFile(String path) throws IOException {
-		byte[] bytes = Files.readAllBytes(Paths.get(path));
-		run(new String(bytes, Charset.defaultCharset()));
+		OutputSink out = OutputSink.stdout(asyncOutput);
+		Interpreter interpreter = new Interpreter(out, new ErrorReporter(System.err));
+		if (jmx) interpreter.metrics = InterpreterMetrics.register(Paths.get(path).getFileName().toString());
+		Profiler profiler = null;
+		if (profile != null) {
+			profiler = new Profiler();
+			interpreter.callStack = profiler.newStack("<script>", true);
+		}
+		LineCounts counts = lineCounts ? new LineCounts() : null;
+		String source = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset());
+		if (allocations) interpreter.trackAllocations(new AllocationTracker(source.split("\r?\n", -1).length));
+		int status;
+		try {
+			status = runScript(Paths.get(path), interpreter, counts);
+		} finally {
+			out.close();//flush what's left before exiting, a StackOverflowError out of the script too
+		}
+		if (profiler != null) profiler.report(profile, System.err);
+		if (counts != null) counts.report(source, System.err);
+		if (interpreter.allocationTracker != null) interpreter.allocationTracker.report(source, System.err);
+		if (heapReport) HeapCensus.take(interpreter.globals).report(System.err);
+		if (status != 0) System.exit(status);
+	}
+	
+	private static void mapFile(String path, Path input, String function) throws IOException {
+		OutputSink out = OutputSink.stdout(asyncOutput);
+		Interpreter interpreter = new Interpreter(out, new ErrorReporter(System.err));
+		int status;
+		try {
+			status = runScript(Paths.get(path), interpreter, null, true);//defines the function, once, RecordMapper then calls it from its workers
+			if (status == 0) status = RecordMapper.run(interpreter, input, function);
+		} finally {
+			out.close();
+		}
+		if (status != 0) System.exit(status);
+	}
+	
+	/**
+	 * Runs a script file, from its .loxc cache when there is a valid one
+	 * @param script
+	 * @param interpreter - the interpreter, and so the globals, to run the script in
+	 * @return the exit status for the script: 0, 65 for a syntax or resolution error, 70 for a runtime error
+	 */
+	static int runScript(Path script, Interpreter interpreter) throws IOException {
+		return runScript(script, interpreter, null);
+	}
+	
+	/**
+	 * @param counts - when not null the program is instrumented to count executions into it
+	 */
+	static int runScript(Path script, Interpreter interpreter, LineCounts counts) throws IOException {
+		return runScript(script, interpreter, counts, false);
+	}
+	
+	/**
+	 * @param hostThreads - the caller goes on to call into the script from threads of its own, so it runs on concurrent maps
+	 *                      even when it can't start tasks itself
+	 */
+	private static int runScript(Path script, Interpreter interpreter, LineCounts counts, boolean hostThreads) throws IOException {
+		ErrorReporter reporter = interpreter.reporter;
+		interpreter.modules = modules;
+		interpreter.directory = script.toAbsolutePath().getParent();
+		List<Stmt> statements = ProgramCache.compile(Files.readAllBytes(script), reporter, fusedFrontEnd, useCache);
+		if (statements != null) {
+			modules.prefetchImports(interpreter.directory, statements);//compiled on the workers, in parallel
+			if (!hostThreads && !TaskUse.in(statements, modules, interpreter.directory)) interpreter.runSingleThreaded();
+			if (compactAst) statements = AstCompactor.compact(statements);
+			if (counts != null) statements = counts.instrument(statements);//the cache keeps the plain program
+			interpreter.interpret(statements);
+		}
 		
-		if (hadError) System.exit(65);
-		if (hadRuntimeError) System.exit(70);
+		if (reporter.hadError) return 65;
+		if (reporter.hadRuntimeError) return 70;
+		return 0;
 	}
 
 /*
@@ -45,55 +197,55 @@ public class Lox {
 	private static void runPrompt() throws IOException {
 		InputStreamReader input = new InputStreamReader(System.in);
 		BufferedReader reader = new BufferedReader(input);
+		ErrorReporter reporter = new ErrorReporter(System.err);
+		OutputSink out = OutputSink.stdout(asyncOutput);
+		Interpreter interpreter = new Interpreter(out, reporter);//one interpreter for the session, so globals persist between lines
+		interpreter.modules = modules;
+		if (jmx) interpreter.metrics = InterpreterMetrics.register("repl");
 
 		for (;;) {
+			out.flush();//the last line's output before the prompt
 			System.out.print("> ");
 			String line = reader.readLine();
 			if (line == null) break;
-			run(line);
+			run(line, interpreter);
 			
-			hadError = false;
+			reporter.hadError = false;
 		}
 	}
 	 
-	private static void run(String source) {
-		Scanner scanner = new Scanner(source);
-		List<Token> tokens = scanner.scanTokens();
-		Parser parser = new Parser(tokens);
-		List<Stmt> statements = parser.parse();
-		
-		//Stop if there was a syntax error.
-		if (hadError) return;
-		
-		Resolver resolver = new Resolver(interpreter);
-		resolver.resolve(statements);
-		
-		//Stop if there was a resolution error.
-		if (hadError) return;
+	static void run(String source, Interpreter interpreter) {
+		List<Stmt> statements = compile(source, interpreter.reporter, fusedFrontEnd);
+		if (statements == null) return;
 		
 		interpreter.interpret(statements);
 		//System.out.println(new AstPrinter().print(expression));
 	}
 	
-	static void error(int line, String message) {
-		report(line, "", message);
-	}
-	
-	static void report(int line, String where, String message) {
-		System.err.println("[line " + line + "] Error" + where + ": " + message);
-		hadError = true;
-	}
-	
-	static void error(Token token, String message) {
-		if (token.type == TokenType.EOF) {
-			report(token.line, "at end", message);
-		} else {
-			report(token.line, " at '" + token.lexeme + "'", message);
+	/**
+	 * Scan, parse and resolve
+	 * @param source
+	 * @param reporter - receives the errors
+	 * @param fused - resolve while parsing instead of in a separate Resolver pass
+	 * @return the resolved program, or null if there was a syntax or resolution error
+	 */
+	static List<Stmt> compile(String source, ErrorReporter reporter, boolean fused) {
+		Scanner scanner = new Scanner(source, reporter);
+		List<Token> tokens = scanner.scanTokens();
+		Parser parser = new Parser(tokens, reporter, fused);
+		List<Stmt> statements = parser.parse();
+		
+		//Stop if there was a syntax error, or with the fused front end, a resolution error.
+		if (reporter.hadError) return null;
+		
+		if (!fused) {
+			Resolver resolver = new Resolver(reporter);
+			resolver.resolve(statements);
+			
+			//Stop if there was a resolution error.
+			if (reporter.hadError) return null;
 		}
-	}
-	
-	static void runtimeError(RuntimeError error) {
-		System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-		hadRuntimeError = true;
+		
+		return statements;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * bench(fn, iterations): times a Lox function with no parameters from inside Lox.
+ * It first warms up, calling fn as many times as it will be measured or for WARMUP_MILLIS, whichever comes first,
+ * so the JIT has compiled the paths fn takes. Then it runs all the iterations in up to MAX_BATCHES timed batches,
+ * the last one taking what is left; each batch gives one sample of the time per call, and the statistics are taken over the samples.
+ * A batch of several calls keeps nanoTime's own cost out of the figure for fast functions,
+ * a function slower than a few microseconds gets a sample per call.
+ *
+ * The result is a map: mean, p50 and p99 in nanoseconds per call, opsPerSec, iterations,
+ * and bytesPerOp, the bytes the thread allocated per call, or nil when the JVM can't tell, on a task's virtual thread for instance.
+ */
+class LoxBench {
+	static final int MAX_BATCHES = 1000;
+	static final long WARMUP_MILLIS = 1000;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	static LoxMap run(Interpreter interpreter, LoxCallable function, int iterations) {
+		List<Object> noArguments = Collections.emptyList();
+		long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1_000_000;
+		for (int i = 0; i < iterations && System.nanoTime() < warmupEnd; i++) {
+			function.call(interpreter, noArguments);
+		}
+
+		int batchSize = Math.ceilDiv(iterations, MAX_BATCHES);
+		int batches = Math.ceilDiv(iterations, batchSize);
+		double[] samples = new double[batches];
+		long bytesBefore = allocatedBytes();
+		long total = 0;
+		for (int b = 0; b < batches; b++) {
+			int size = Math.min(batchSize, iterations - b * batchSize);//the last batch runs the remainder
+			long start = System.nanoTime();
+			for (int i = 0; i < size; i++) {
+				function.call(interpreter, noArguments);
+			}
+			long elapsed = System.nanoTime() - start;
+			samples[b] = (double)elapsed / size;
+			total += elapsed;
+		}
+		long bytesAfter = allocatedBytes();
+		long calls = iterations;
+
+		Arrays.sort(samples);
+		LoxMap result = new LoxMap();
+		double mean = (double)total / calls;
+		result.put("mean", mean);
+		result.put("p50", percentile(samples, 0.50));
+		result.put("p99", percentile(samples, 0.99));
+		result.put("opsPerSec", total == 0 ? null : calls * 1e9 / total);
+		result.put("iterations", (double)calls);
+		result.put("bytesPerOp", bytesBefore < 0 || bytesAfter < 0 ? null : (double)(bytesAfter - bytesBefore) / calls);
+		return result;
+	}
+
+	//nearest rank
+	private static double percentile(double[] sorted, double fraction) {
+		int rank = (int)Math.ceil(fraction * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	//-1 when not supported
+	private static long allocatedBytes() {
+		if (!THREADS.isThreadAllocatedMemoryEnabled()) return -1;
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().threadId());
+	}
+}
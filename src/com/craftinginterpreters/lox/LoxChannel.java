@@ -0,0 +1,40 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * What channel(capacity) returns, a bounded first-in first-out queue for passing values between tasks.
+ * send(channel, value) waits while the channel is full and receive(channel) waits while it is empty.
+ * Waiting parks the task's virtual thread, so a blocked task does not hold on to a platform thread.
+ */
+class LoxChannel {
+	private final BlockingQueue<Object> queue;
+
+	LoxChannel(int capacity) {
+		queue = new ArrayBlockingQueue<>(capacity);
+	}
+
+	void send(Object value) {
+		try {
+			queue.put(Environment.wrap(value));//the queue can't hold null either
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeError("Interrupted while sending.");
+		}
+	}
+
+	Object receive() {
+		try {
+			return Environment.unwrap(queue.take());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeError("Interrupted while receiving.");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "<channel>";
+	}
+}
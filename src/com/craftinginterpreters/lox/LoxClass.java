@@ -1,5 +1,6 @@
 package com.craftinginterpreters.lox;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +29,10 @@ public class LoxClass implements LoxCallable {
 	
 	
 	
+	Collection<LoxFunction> methods() {
+		return methods.values();
+	}
+	
 	@Override
 	public String toString() {
 		return name;
@@ -41,7 +46,27 @@ public class LoxClass implements LoxCallable {
 	 */
 	@Override
 	public Object call(Interpreter interpreter, List<Object> arguments) {
-		LoxInstance instance = new LoxInstance(this);//instance has a reference to the class because the class holds behavior, instance holds state
+		LoxEvents.Instantiation event = new LoxEvents.Instantiation();//a no-op unless a flight recording is running
+		event.begin();
+		Profiler.ShadowStack stack = interpreter.callStack;//null unless profiling
+		if (stack != null) stack.push(this);
+		try {
+			return instantiate(interpreter, arguments);
+		} finally {
+			if (stack != null) stack.pop();
+			event.end();
+			if (event.shouldCommit()) {
+				event.className = name;
+				event.arguments = arguments.size();
+				event.commit();
+			}
+		}
+	}
+	
+	private Object instantiate(Interpreter interpreter, List<Object> arguments) {
+		if (interpreter.metrics != null) interpreter.metrics.instances.increment();
+		if (interpreter.allocations != null) interpreter.allocations.record(AllocationTracker.Kind.INSTANCE, interpreter.line, interpreter.function, 0);
+		LoxInstance instance = new LoxInstance(this, interpreter.globals.concurrent());//instance has a reference to the class because the class holds behavior, instance holds state
 		LoxFunction initializer = findMethod("init");//create a runtime function object for the init() method
 		if (initializer != null) {
 			//bind creates a new environment that binds "this" to the LoxInstance
@@ -49,7 +74,7 @@ public class LoxClass implements LoxCallable {
 			//so that LoxFunction's environment chain as one environment where "this" is bound
 			//we then call that function (init) passing the arguments from the call to the Class() method
 			//thus arguments to Bagel() get passed to Bagel's init to do the the init things
-			initializer.bind(instance).call(interpreter, arguments);
+			initializer.bind(instance, interpreter).call(interpreter, arguments);
 		}
 		
 		return instance;
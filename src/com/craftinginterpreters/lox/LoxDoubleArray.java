@@ -0,0 +1,233 @@
+package com.craftinginterpreters.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A fixed-size array of numbers stored unboxed, made by DoubleArray(n) with every element 0.
+ * Up to OFF_HEAP_THRESHOLD elements it is a double[], above that a direct buffer outside the Java heap,
+ * so a large dataset costs 8 bytes a number and doesn't count against the heap. Either way it is used
+ * through a DoubleBuffer, and a number is only boxed when get hands it to Lox.
+ *
+ * Methods: get(index), set(index, value), len(), fill(value), sum(), dot(other), sort(),
+ * and slice(from, to), a view of elements from up to but not including to, sharing the storage, so sorting a slice sorts that part.
+ * Like LoxList it is not synchronized.
+ */
+class LoxDoubleArray implements NativeObject {
+	private static final List<String> METHODS = List.of("get", "set", "len", "fill", "sum", "dot", "sort", "slice");
+	static final int OFF_HEAP_THRESHOLD = 1 << 22;//32 MB
+
+	private final DoubleBuffer elements;//position 0, limit the length
+	private NativeFunction[] methods;//bound to this array when first read, then kept, see get
+
+	private LoxDoubleArray(DoubleBuffer elements) {
+		this.elements = elements;
+	}
+
+	static LoxDoubleArray allocate(int length) {
+		if (length < OFF_HEAP_THRESHOLD) return new LoxDoubleArray(DoubleBuffer.wrap(new double[length]));
+		ByteBuffer bytes = ByteBuffer.allocateDirect(length * Double.BYTES).order(ByteOrder.nativeOrder());
+		return new LoxDoubleArray(bytes.asDoubleBuffer());
+	}
+
+	int length() {
+		return elements.limit();
+	}
+
+	LoxDoubleArray copy() {
+		LoxDoubleArray copy = allocate(length());
+		copy.elements.put(0, elements, 0, length());
+		return copy;
+	}
+
+	double sum() {
+		double sum = 0;
+		for (int i = 0, n = elements.limit(); i < n; i++) {
+			sum += elements.get(i);
+		}
+		return sum;
+	}
+
+	double dot(LoxDoubleArray other) {
+		double sum = 0;
+		for (int i = 0, n = elements.limit(); i < n; i++) {
+			sum += elements.get(i) * other.elements.get(i);
+		}
+		return sum;
+	}
+
+	void sort() {
+		if (elements.hasArray()) {
+			Arrays.sort(elements.array(), elements.arrayOffset(), elements.arrayOffset() + elements.limit());
+			return;
+		}
+		sort(elements, 0, elements.limit(), 2 * (32 - Integer.numberOfLeadingZeros(elements.limit())));//off heap, in place
+	}
+
+	//introsort, in the order Arrays.sort gives: Double.compare's, -0.0 before 0.0 and NaN last.
+	//Quicksort on the larger ranges with heapsort once it is too deep, insertion sort on the small ones
+	private static void sort(DoubleBuffer a, int from, int to, int depth) {
+		while (to - from > 16) {
+			if (depth-- == 0) {
+				heapSort(a, from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			if (Double.compare(a.get(middle), a.get(from)) < 0) swap(a, middle, from);
+			if (Double.compare(a.get(to - 1), a.get(from)) < 0) swap(a, to - 1, from);
+			if (Double.compare(a.get(to - 1), a.get(middle)) < 0) swap(a, to - 1, middle);
+			double pivot = a.get(middle);
+			int i = from, j = to - 1;
+			while (i <= j) {
+				while (Double.compare(a.get(i), pivot) < 0) i++;
+				while (Double.compare(a.get(j), pivot) > 0) j--;
+				if (i <= j) swap(a, i++, j--);
+			}
+			if (j - from < to - i) {//recurse into the smaller part, loop on the larger, so the stack stays O(log n)
+				sort(a, from, j + 1, depth);
+				from = i;
+			} else {
+				sort(a, i, to, depth);
+				to = j + 1;
+			}
+		}
+		for (int i = from + 1; i < to; i++) {
+			double value = a.get(i);
+			int j = i - 1;
+			while (j >= from && Double.compare(a.get(j), value) > 0) {
+				a.put(j + 1, a.get(j));
+				j--;
+			}
+			a.put(j + 1, value);
+		}
+	}
+
+	private static void heapSort(DoubleBuffer a, int from, int to) {
+		int n = to - from;
+		for (int i = n / 2 - 1; i >= 0; i--) {
+			siftDown(a, from, i, n);
+		}
+		for (int end = n - 1; end > 0; end--) {
+			swap(a, from, from + end);
+			siftDown(a, from, 0, end);
+		}
+	}
+
+	private static void siftDown(DoubleBuffer a, int from, int root, int n) {
+		for (int child; (child = 2 * root + 1) < n; root = child) {
+			if (child + 1 < n && Double.compare(a.get(from + child + 1), a.get(from + child)) > 0) child++;
+			if (Double.compare(a.get(from + root), a.get(from + child)) >= 0) return;
+			swap(a, from + root, from + child);
+		}
+	}
+
+	private static void swap(DoubleBuffer a, int i, int j) {
+		double t = a.get(i);
+		a.put(i, a.get(j));
+		a.put(j, t);
+	}
+
+	void fill(double value) {
+		if (elements.hasArray()) {
+			Arrays.fill(elements.array(), elements.arrayOffset(), elements.arrayOffset() + elements.limit(), value);
+			return;
+		}
+		for (int i = 0, n = elements.limit(); i < n; i++) {
+			elements.put(i, value);
+		}
+	}
+
+	@Override
+	public Object get(Token name) {
+		int index = METHODS.indexOf(name.lexeme);
+		if (index < 0) throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+		if (methods == null) methods = new NativeFunction[METHODS.size()];
+		if (methods[index] == null) methods[index] = method(name.lexeme);
+		return methods[index];
+	}
+
+	private NativeFunction method(String name) {
+		switch (name) {
+		case "get":
+			return new NativeFunction("get", 1) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					return elements.get(index(arguments.get(0), elements.limit()));
+				}
+			};
+		case "set":
+			return new NativeFunction("set", 2) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					int index = index(arguments.get(0), elements.limit());
+					elements.put(index, expect(arguments.get(1), Double.class, "a number value"));
+					return arguments.get(1);
+				}
+			};
+		case "len":
+			return new NativeFunction("len", 0) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					return (double)elements.limit();
+				}
+			};
+		case "fill":
+			return new NativeFunction("fill", 1) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					fill(expect(arguments.get(0), Double.class, "a number"));
+					return null;
+				}
+			};
+		case "sum":
+			return new NativeFunction("sum", 0) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					return sum();
+				}
+			};
+		case "dot":
+			return new NativeFunction("dot", 1) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					LoxDoubleArray other = expect(arguments.get(0), LoxDoubleArray.class, "a DoubleArray");
+					if (other.length() != length()) throw new RuntimeError("dot() expects a DoubleArray of the same length.");
+					return dot(other);
+				}
+			};
+		case "sort":
+			return new NativeFunction("sort", 0) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					sort();
+					return null;
+				}
+			};
+		case "slice":
+			return new NativeFunction("slice", 2) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					int from = index(arguments.get(0), elements.limit() + 1);//from and to may both be the length, an empty slice
+					int to = index(arguments.get(1), elements.limit() + 1);
+					if (to < from) throw new RuntimeError("slice() expects from to be no more than to.");
+					return new LoxDoubleArray(elements.slice(from, to - from));
+				}
+			};
+		default:
+			throw new AssertionError(name);//every name in METHODS has a case
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("[");
+		for (int i = 0, n = elements.limit(); i < n; i++) {
+			if (i > 0) text.append(", ");
+			text.append(Interpreter.stringify(elements.get(i)));
+		}
+		return text.append("]").toString();
+	}
+}
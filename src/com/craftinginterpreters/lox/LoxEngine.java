@@ -0,0 +1,52 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Embedding API. Compile a script once, then run the CompiledScript as many times as needed,
+ * from as many threads as needed. Each run gets its own Interpreter, so its own globals, output and errors.
+ *
+ * LoxEngine engine = new LoxEngine();
+ * CompiledScript rule = engine.compile(source);//throws CompileError
+ * boolean ok = rule.run(out, err);//on any thread, any number of times
+ */
+public final class LoxEngine {
+	private final boolean fusedFrontEnd;
+	private final boolean compactAst;
+	
+	public LoxEngine() {
+		this(false);
+	}
+	
+	/**
+	 * @param fusedFrontEnd - resolve while parsing instead of in a separate Resolver pass
+	 */
+	public LoxEngine(boolean fusedFrontEnd) {
+		this(fusedFrontEnd, false);
+	}
+	
+	/**
+	 * @param fusedFrontEnd - resolve while parsing instead of in a separate Resolver pass
+	 * @param compactAst - keep compiled scripts in the smaller form AstCompactor makes, for hosts holding many scripts
+	 */
+	public LoxEngine(boolean fusedFrontEnd, boolean compactAst) {
+		this.fusedFrontEnd = fusedFrontEnd;
+		this.compactAst = compactAst;
+	}
+	
+	/**
+	 * Scan, parse and resolve a script. Safe to call from several threads at once.
+	 * @param source
+	 * @return the resolved program
+	 * @throws CompileError with every syntax and resolution error, when there are any
+	 */
+	public CompiledScript compile(String source) {
+		ErrorReporter reporter = new ErrorReporter(null);//collect only, the CompileError carries the messages
+		List<Stmt> statements = Lox.compile(source, reporter, fusedFrontEnd);
+		if (statements == null) throw new CompileError(reporter.messages());
+		if (compactAst) statements = AstCompactor.compact(statements);
+		
+		return new CompiledScript(Collections.unmodifiableList(statements));
+	}
+}
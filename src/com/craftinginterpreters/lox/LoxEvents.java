@@ -0,0 +1,72 @@
+package com.craftinginterpreters.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events for Lox code, so Lox-level latency shows up in the same recording as GC and allocation.
+ * Start a recording as usual, java -XX:StartFlightRecording ... Lox script, the events are in the Lox category.
+ * Calls and instantiations are only recorded when they take at least their threshold, 1 ms by default,
+ * change it with the recording's settings, for example jlox.Call#threshold=10 ms.
+ * With no recording running the events are disabled and the JIT removes them from the call path.
+ */
+class LoxEvents {
+	private LoxEvents() {}
+
+	@Name("jlox.Call")
+	@Label("Lox Function Call")
+	@Category("Lox")
+	@Threshold("1 ms")
+	@StackTrace(false)//the Java stack is interpreter frames, the function and line say where in Lox
+	static class Call extends Event {
+		@Label("Function")
+		String function;
+
+		@Label("Line")
+		@Description("Line of the function's declaration")
+		int line;
+
+		@Label("Arguments")
+		int arguments;
+	}
+
+	@Name("jlox.Instantiation")
+	@Label("Lox Class Instantiation")
+	@Category("Lox")
+	@Threshold("1 ms")
+	@StackTrace(false)
+	static class Instantiation extends Event {
+		@Label("Class")
+		String className;
+
+		@Label("Arguments")
+		int arguments;
+	}
+
+	@Name("jlox.Interpret")
+	@Label("Lox Interpret")
+	@Description("Running a program's top-level statements, tasks included")
+	@Category("Lox")
+	@StackTrace(false)
+	static class Interpret extends Event {
+		@Label("Statements")
+		int statements;
+	}
+
+	@Name("jlox.RuntimeError")
+	@Label("Lox Runtime Error")
+	@Category("Lox")
+	@StackTrace(false)
+	static class RuntimeError extends Event {
+		@Label("Message")
+		String message;
+
+		@Label("Line")
+		int line;
+	}
+}
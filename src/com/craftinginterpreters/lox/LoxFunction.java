@@ -12,25 +12,84 @@ public class LoxFunction implements LoxCallable{
 	private final Stmt.Function declaration;
 	private final Environment closure;//put any data known at the time this function is declared. "close" around that data
 	private final boolean isInitializer;
+	private final String module;//the path of the module declaring it, null when the script does
 	
 	/**
 	 * Constructor
 	 * @param declaration - the Stmt.Function to wrap
+	 * @param module - the module running the declaration, Interpreter.module
 	 */
-	LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+	LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer, String module) {
 		this.isInitializer = isInitializer;
+		this.module = module;
 		this.closure = closure;
 		this.declaration = declaration;
 	}
 	
-	LoxFunction bind(LoxInstance instance) {
+	/**
+	 * @param instance - what this is bound to in the method
+	 * @param interpreter - counts the binding
+	 */
+	LoxFunction bind(LoxInstance instance, Interpreter interpreter) {
+		InterpreterMetrics metrics = interpreter.metrics;
+		if (metrics != null) {
+			metrics.boundMethods.increment();
+			metrics.environments.increment();
+		}
+		AllocationTracker allocations = interpreter.allocations;
+		if (allocations != null) {
+			allocations.record(AllocationTracker.Kind.BOUND_METHOD, interpreter.line, interpreter.function, 0);
+			allocations.record(AllocationTracker.Kind.ENVIRONMENT, interpreter.line, interpreter.function, 0);
+		}
 		Environment environment = new Environment(closure);
 		environment.define("this", instance);
-		return new LoxFunction(declaration, environment, isInitializer);
+		return new LoxFunction(declaration, environment, isInitializer, module);
 	}
 	
 	@Override
 	public Object call(Interpreter interpreter, List<Object> arguments) {
+		LoxEvents.Call event = new LoxEvents.Call();//a no-op unless a flight recording is running
+		event.begin();
+		Profiler.ShadowStack stack = interpreter.callStack;//null unless profiling
+		if (stack != null) stack.push(declaration);
+		Stmt.Function caller = interpreter.function;
+		String callerModule = interpreter.module;
+		AllocationTracker allocations = interpreter.allocations;//null unless tracking, and while a module's code runs
+		if (allocations != null) {
+			allocations.record(AllocationTracker.Kind.ENVIRONMENT, interpreter.line, caller, 0);//made by invoke, on behalf of the call site
+			for (int i = 0; i < arguments.size(); i++) allocations.record(AllocationTracker.Kind.VARIABLE, interpreter.line, caller, 0);
+		}
+		interpreter.module = module;
+		if (interpreter.allocationTracker != null) {
+			interpreter.function = declaration;
+			interpreter.allocations = module == null ? interpreter.allocationTracker : null;//a module's lines aren't the script's
+		}
+		try {
+			return invoke(interpreter, arguments);
+		} catch (RuntimeError error) {
+			error.place(module);
+			throw error;
+		} finally {
+			interpreter.function = caller;
+			interpreter.module = callerModule;
+			interpreter.allocations = allocations;
+			if (stack != null) stack.pop();
+			event.end();
+			if (event.shouldCommit()) {//enabled and over the threshold
+				event.function = declaration.name.lexeme;
+				event.line = declaration.name.line;
+				event.arguments = arguments.size();
+				event.commit();
+			}
+		}
+	}
+	
+	private Object invoke(Interpreter interpreter, List<Object> arguments) {
+		InterpreterMetrics metrics = interpreter.metrics;
+		if (metrics != null) {
+			metrics.calls.increment();
+			metrics.environments.increment();
+		}
 		Environment environment = new Environment(closure);
 		//create an environment for the function call, passing the closure environment to be the parent environment
 		//this way, the function object has access to any data declared at the time it is defined
@@ -52,6 +111,14 @@ public class LoxFunction implements LoxCallable{
 		return null;//if we got to here then the function never did a return statement so we just return null (nil)
 	}
 
+	Stmt.Function declaration() {
+		return declaration;
+	}
+	
+	Environment closure() {
+		return closure;
+	}
+	
 	@Override
 	public int arity() {
 		return declaration.params.size();//when this function gets called, 
@@ -1,30 +1,59 @@
 package com.craftinginterpreters.lox;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-
+/**
+ * Fields follow the same memory model as Environment: reads and writes of a single field are atomic and
+ * visible across tasks, read-modify-write sequences are not. Like environments, instances of a program that can't
+ * start tasks keep their fields in a plain HashMap.
+ */
 public class LoxInstance {
 	private LoxClass klass;
-	private final Map<String, Object> fields = new HashMap<>();//this is the instance's state
+	private final Map<String, Object> fields;//this is the instance's state, nil is stored as Environment.NIL
 	
-	LoxInstance(LoxClass klass) {
+	/**
+	 * @param concurrent - whether tasks may share the instance, see Environment.concurrent
+	 */
+	LoxInstance(LoxClass klass, boolean concurrent) {
 		this.klass = klass;
+		this.fields = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
 	}
 	
-	Object get(Token name) {
-		if (fields.containsKey(name.lexeme)) {
-			return fields.get(name.lexeme);
+	/**
+	 * @param name
+	 * @param interpreter - counts the bound method when the name is a method
+	 */
+	Object get(Token name, Interpreter interpreter) {
+		Object value = fields.get(name.lexeme);
+		if (value != null) {
+			return Environment.unwrap(value);
 		}
 		
 		LoxFunction method = klass.findMethod(name.lexeme);//couldn't find a field by that name, look for a method by that name in the instance's class
-		if (method != null) return method.bind(this);
+		if (method != null) return method.bind(this, interpreter);
 		
 		throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
 	}
 	
-	void set(Token name, Object value) {
-		fields.put(name.lexeme, value);
+	/**
+	 * @return whether the instance didn't have the field before
+	 */
+	boolean set(Token name, Object value) {
+		return fields.put(name.lexeme, Environment.wrap(value)) == null;
+	}
+	
+	LoxClass klass() {
+		return klass;
+	}
+	
+	/**
+	 * The field values, nil as Environment.NIL, for HeapCensus
+	 */
+	Collection<Object> fieldValues() {
+		return fields.values();
 	}
 	
 	@Override
@@ -0,0 +1,135 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A handle to an isolate: a script running in its own Interpreter, with its own globals, on its own thread.
+ * Isolates share no Lox objects, the only way between them is a message posted to a mailbox,
+ * so functions, classes and instances never cross from one isolate to another and need no locking.
+ *
+ * isolate(path) starts the script, its path relative to the calling file's directory as an import's is, and returns its handle, inside the script the global parent is the starter's handle.
+ * post(handle, message) queues a copy of the message in that isolate's mailbox, message() waits for the next one in the caller's.
+ * Only values that can't be changed are posted: nil, booleans, numbers, strings and isolate handles.
+ * Lists and maps of those, and DoubleArrays, are deep-copied, so the receiver gets its own.
+ * join(handle) waits for the isolate's script to finish. Isolate threads don't keep the process alive,
+ * so a script should join the isolates whose output it wants to see.
+ *
+ * Every interpreter has a handle for its own mailbox, tasks share the one of the isolate they were spawned in.
+ */
+class LoxIsolate {
+	private final BlockingQueue<Object> mailbox = new LinkedBlockingQueue<>();//unbounded, post never waits
+	private Thread thread;//null for the top-level script, which nobody joins
+
+	/**
+	 * Compiles the script and starts it on a new thread
+	 * @param path - the script to run, as the caller wrote it
+	 * @param parent - the interpreter starting it, the isolate prints and reports errors where it does
+	 * @return the new isolate's handle
+	 */
+	static LoxIsolate start(String path, Interpreter parent) {
+		Path script = ModuleLoader.resolve(parent.directory, path);
+		byte[] source;
+		try {
+			source = Files.readAllBytes(script);
+		} catch (IOException e) {
+			throw new RuntimeError("Could not read isolate script " + path + ".");
+		}
+		ErrorReporter compileErrors = new ErrorReporter(null);//its own, a broken isolate script is a runtime error in the parent
+		List<Stmt> statements = parent.modules.compile(source, compileErrors);//the options and cache the process runs with
+		if (statements == null) {
+			throw new RuntimeError("Could not compile isolate script " + path + ":\n" + String.join("\n", compileErrors.messages()));
+		}
+
+		LoxIsolate isolate = new LoxIsolate();
+		Interpreter interpreter = new Interpreter(parent.out, parent.reporter, isolate);
+		interpreter.globals.define("parent", parent.isolate);
+		interpreter.metrics = parent.metrics;//an isolate counts towards the script that started it
+		interpreter.modules = parent.modules;//its own globals, so it runs the modules it imports itself, compiled only once
+		interpreter.directory = script.getParent();
+		interpreter.modules.prefetchImports(interpreter.directory, statements);
+		if (!TaskUse.in(statements, interpreter.modules, interpreter.directory)) interpreter.runSingleThreaded();//nothing is shared with the parent
+		if (parent.callStack != null) interpreter.callStack = parent.callStack.profiler.newStack("<isolate " + path + ">", true);
+		isolate.thread = new Thread(() -> {
+			try {
+				interpreter.interpret(statements);
+			} catch (StackOverflowError error) {
+				parent.reporter.runtimeError(new RuntimeError("Stack overflow in isolate " + path + "."));
+			}
+		}, "lox-isolate " + path);//a platform thread, an isolate is a whole script and may recurse deeply
+		isolate.thread.setDaemon(true);
+		isolate.thread.start();
+		return isolate;
+	}
+
+	void post(Object message) {
+		mailbox.add(Environment.wrap(copy(message, new IdentityHashMap<>())));
+	}
+
+	//copied maps the lists and maps already copied to their copies, so a list holding itself, or one held twice,
+	//comes out the same shape instead of recursing forever
+	private static Object copy(Object value, Map<Object, Object> copied) {
+		Object done = copied.get(value);
+		if (done != null) return done;
+		if (value instanceof LoxList) {
+			LoxList list = (LoxList)value;
+			Object[] elements = new Object[list.size()];
+			LoxList result = new LoxList(elements);
+			copied.put(value, result);
+			for (int i = 0; i < elements.length; i++) {
+				elements[i] = copy(list.get(i), copied);
+			}
+			return result;
+		}
+		if (value instanceof LoxMap) {
+			LoxMap map = (LoxMap)value;
+			LoxMap result = new LoxMap();
+			copied.put(value, result);
+			LoxList keys = map.keys();
+			for (int i = 0; i < keys.size(); i++) {
+				result.put(copy(keys.get(i), copied), copy(map.lookup(keys.get(i)), copied));
+			}
+			return result;
+		}
+		if (value instanceof LoxDoubleArray) {
+			LoxDoubleArray result = ((LoxDoubleArray)value).copy();
+			copied.put(value, result);
+			return result;
+		}
+		if (value != null && !(value instanceof Boolean) && !(value instanceof Double)
+				&& !(value instanceof String) && !(value instanceof LoxIsolate)) {
+			throw new RuntimeError("post() can only send nil, booleans, numbers, strings, isolates, DoubleArrays and lists and maps of those.");
+		}
+		return value;
+	}
+
+	Object take() {
+		try {
+			return Environment.unwrap(mailbox.take());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeError("Interrupted while waiting for a message.");
+		}
+	}
+
+	void join() {
+		if (thread == null) throw new RuntimeError("Can't join the top-level script.");
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeError("Interrupted while joining an isolate.");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "<isolate>";
+	}
+}
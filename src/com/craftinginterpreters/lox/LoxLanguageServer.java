@@ -0,0 +1,257 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * jlox --lsp: a minimal language server on standard input and output. It keeps an IncrementalDocument per open file,
+ * takes incremental changes, and publishes syntax and resolution errors after every change.
+ * It answers initialize and shutdown, handles didOpen, didChange, didClose and exit, and answers other requests
+ * with MethodNotFound. Diagnostics cover the whole line the error was reported on, the front end only tracks lines.
+ * Nothing but protocol messages may go to standard output.
+ */
+class LoxLanguageServer {
+	private static final int MESSAGE_LIMIT = 64 << 20;
+	private static final String CONTENT_LENGTH = "content-length:";
+
+	private final InputStream in;
+	private final OutputStream out;
+	private final Map<String, IncrementalDocument> documents = new HashMap<>();//by uri
+	private boolean shutdown = false;
+
+	LoxLanguageServer(InputStream in, OutputStream out) {
+		this.in = new BufferedInputStream(in);
+		this.out = out;
+	}
+
+	/**
+	 * Serves until exit or the end of input
+	 * @return the exit status, 0 after shutdown and exit as the protocol asks, 1 otherwise
+	 */
+	int serve() throws IOException {
+		String body;
+		while ((body = readMessage()) != null) {
+			Map<?, ?> message;
+			try {
+				message = (Map<?, ?>)Json.parse(body);
+			} catch (IllegalArgumentException | ClassCastException e) {
+				send(error(null, -32700, "Parse error: " + e.getMessage()));
+				continue;
+			}
+			try {
+				String method = (String)message.get("method");
+				if (method == null) continue;//a response to something we never ask
+				if (method.equals("exit")) return shutdown ? 0 : 1;
+				Map<?, ?> params = message.get("params") instanceof Map ? (Map<?, ?>)message.get("params") : Map.of();
+				handle(message.get("id"), method, params);
+			} catch (ClassCastException | NullPointerException e) {//a field missing or of the wrong type
+				failed(message, -32602, "Invalid params", e);
+			} catch (RuntimeException e) {
+				failed(message, -32603, "Internal error", e);
+			}
+		}
+		return 1;
+	}
+
+	private void handle(Object id, String method, Map<?, ?> params) throws IOException {
+		switch (method) {
+			case "initialize":
+				Map<String, Object> capabilities = new LinkedHashMap<>();
+				capabilities.put("textDocumentSync", 2.0);//incremental
+				send(result(id, Map.of("capabilities", capabilities, "serverInfo", Map.of("name", "jlox", "version", Lox.VERSION))));
+				break;
+			case "textDocument/didOpen": {
+				Map<?, ?> document = (Map<?, ?>)params.get("textDocument");
+				String uri = (String)document.get("uri");
+				documents.put(uri, new IncrementalDocument((String)document.get("text")));
+				publish(uri);
+				break;
+			}
+			case "textDocument/didChange": {
+				String uri = (String)((Map<?, ?>)params.get("textDocument")).get("uri");
+				IncrementalDocument document = documents.get(uri);
+				if (document == null) break;
+				for (Object change : (List<?>)params.get("contentChanges")) {
+					apply(document, (Map<?, ?>)change);
+				}
+				publish(uri);
+				break;
+			}
+			case "textDocument/didClose": {
+				String uri = (String)((Map<?, ?>)params.get("textDocument")).get("uri");
+				documents.remove(uri);
+				send(notification("textDocument/publishDiagnostics", Map.of("uri", uri, "diagnostics", List.of())));
+				break;
+			}
+			case "shutdown":
+				shutdown = true;
+				send(result(id, null));
+				break;
+			default:
+				if (id != null) send(error(id, -32601, "Method not found: " + method));//notifications we don't handle are dropped
+		}
+	}
+
+	//a request gets the error as its response, a notification has nobody to answer so it is only logged, on stderr
+	private void failed(Map<?, ?> message, int code, String text, RuntimeException e) throws IOException {
+		Object id = message.get("id");
+		if (id != null) {
+			send(error(id, code, text + ": " + e));
+		} else {
+			System.err.println("jlox lsp: " + message.get("method") + " failed, " + e);
+		}
+	}
+
+	private static void apply(IncrementalDocument document, Map<?, ?> change) {
+		String text = (String)change.get("text");
+		Map<?, ?> range = (Map<?, ?>)change.get("range");
+		if (range == null) {
+			document.replace(text);
+			return;
+		}
+		Map<?, ?> start = (Map<?, ?>)range.get("start");
+		Map<?, ?> end = (Map<?, ?>)range.get("end");
+		document.edit(number(start.get("line")), number(start.get("character")), number(end.get("line")), number(end.get("character")), text);
+	}
+
+	private static int number(Object value) {
+		return ((Double)value).intValue();
+	}
+
+	private void publish(String uri) throws IOException {
+		IncrementalDocument document = documents.get(uri);
+		int lines = document.lines();
+		List<Object> diagnostics = new ArrayList<>();
+		for (ErrorReporter.Diagnostic diagnostic : document.diagnostics()) {
+			int line = Math.max(0, Math.min(diagnostic.line - 1, lines - 1));
+			Map<String, Object> range = new LinkedHashMap<>();
+			range.put("start", position(line, 0));
+			range.put("end", position(line, document.lineLength(line)));
+			Map<String, Object> item = new LinkedHashMap<>();
+			item.put("range", range);
+			item.put("severity", 1.0);//error
+			item.put("source", "jlox");
+			String where = diagnostic.where.trim();
+			item.put("message", where.isEmpty() ? diagnostic.message : "Error " + where + ": " + diagnostic.message);
+			diagnostics.add(item);
+		}
+		send(notification("textDocument/publishDiagnostics", Map.of("uri", uri, "diagnostics", diagnostics)));
+	}
+
+	private static Map<String, Object> position(int line, int character) {
+		Map<String, Object> position = new LinkedHashMap<>();
+		position.put("line", (double)line);
+		position.put("character", (double)character);
+		return position;
+	}
+
+	private static Map<String, Object> result(Object id, Object result) {
+		Map<String, Object> message = new LinkedHashMap<>();
+		message.put("jsonrpc", "2.0");
+		message.put("id", id);
+		message.put("result", result);
+		return message;
+	}
+
+	private static Map<String, Object> error(Object id, int code, String text) {
+		Map<String, Object> message = new LinkedHashMap<>();
+		message.put("jsonrpc", "2.0");
+		message.put("id", id);
+		message.put("error", Map.of("code", (double)code, "message", text));
+		return message;
+	}
+
+	private static Map<String, Object> notification(String method, Object params) {
+		Map<String, Object> message = new LinkedHashMap<>();
+		message.put("jsonrpc", "2.0");
+		message.put("method", method);
+		message.put("params", params);
+		return message;
+	}
+
+	//the body of the next message, null at the end of input. A message over MESSAGE_LIMIT is skipped. A header block
+	//without a usable Content-Length leaves no way to know where its body ends, so input is skipped up to the next
+	//Content-Length header, which starts the next block
+	private String readMessage() throws IOException {
+		String header = readHeaderLine();
+		for (;;) {
+			int length = -1;
+			String problem = "no Content-Length";
+			for (; header != null && !header.isEmpty(); header = readHeaderLine()) {
+				int colon = header.indexOf(':');
+				if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+					try {
+						length = Integer.parseInt(header.substring(colon + 1).trim());
+						problem = length < 0 ? "a negative Content-Length" : null;
+					} catch (NumberFormatException e) {
+						length = -1;
+						problem = "a malformed Content-Length";
+					}
+				}
+			}
+			if (header == null) return null;
+
+			if (problem == null && length <= MESSAGE_LIMIT) {
+				byte[] body = in.readNBytes(length);
+				if (body.length < length) return null;
+				return new String(body, StandardCharsets.UTF_8);
+			}
+			if (problem == null) {
+				System.err.println("jlox lsp: skipping a message of " + length + " bytes, over the limit");
+				byte[] discard = new byte[8192];//read, not skipped, skip fails on a pipe
+				for (int left = length; left > 0; ) {
+					int n = in.read(discard, 0, Math.min(left, discard.length));
+					if (n < 0) return null;
+					left -= n;
+				}
+				header = readHeaderLine();
+			} else {
+				System.err.println("jlox lsp: skipping a message with " + problem);
+				header = nextContentLength();
+			}
+		}
+	}
+
+	//the next Content-Length header line, found byte by byte: a body before it needn't end in a line break,
+	//and one that never does isn't kept in memory
+	private String nextContentLength() throws IOException {
+		int matched = 0;
+		while (matched < CONTENT_LENGTH.length()) {
+			int c = in.read();
+			if (c < 0) return null;
+			if (Character.toLowerCase(c) == CONTENT_LENGTH.charAt(matched)) {
+				matched++;
+			} else {
+				matched = Character.toLowerCase(c) == CONTENT_LENGTH.charAt(0) ? 1 : 0;//the name has no other c to restart from
+			}
+		}
+		String value = readHeaderLine();
+		return value == null ? null : "Content-Length:" + value;
+	}
+
+	private String readHeaderLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int c;
+		while ((c = in.read()) != '\n') {
+			if (c < 0) return null;
+			if (c != '\r') line.write(c);
+		}
+		return line.toString(StandardCharsets.US_ASCII);
+	}
+
+	private void send(Map<String, Object> message) throws IOException {
+		byte[] body = Json.write(message).getBytes(StandardCharsets.UTF_8);
+		out.write(("Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		out.write(body);
+		out.flush();
+	}
+}
@@ -0,0 +1,142 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An array-backed list of Lox values, made by List() or returned by pmap.
+ * The array grows by half again when full, so push is amortized O(1), get and set are O(1).
+ *
+ * Methods: get(index), set(index, value), push(value), pop(), len(), forEach(fn), which calls fn(element) for each element.
+ * Indexes are whole numbers from 0 to len() - 1.
+ * A list is not synchronized, tasks sharing one should hand it over through a channel rather than change it concurrently.
+ */
+class LoxList implements NativeObject {
+	private static final List<String> METHODS = List.of("get", "set", "push", "pop", "len", "forEach");
+	private static final Object[] EMPTY = {};
+
+	private Object[] elements;
+	private int size;
+	private NativeFunction[] methods;//bound to this list when first read, then kept, see get
+
+	LoxList() {
+		this.elements = EMPTY;
+	}
+
+	/**
+	 * @param elements - taken over by the list, not copied
+	 */
+	LoxList(Object[] elements) {
+		this.elements = elements;
+		this.size = elements.length;
+	}
+
+	int size() {
+		return size;
+	}
+
+	Object get(int index) {
+		return elements[index];
+	}
+
+	void add(Object value) {
+		if (size == elements.length) {
+			elements = Arrays.copyOf(elements, Math.max(8, size + (size >> 1)));
+		}
+		elements[size++] = value;
+	}
+
+	@Override
+	public Object get(Token name) {
+		int index = METHODS.indexOf(name.lexeme);
+		if (index < 0) throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+		if (methods == null) methods = new NativeFunction[METHODS.size()];
+		if (methods[index] == null) methods[index] = method(name.lexeme);
+		return methods[index];
+	}
+
+	private NativeFunction method(String name) {
+		switch (name) {
+		case "get":
+			return new NativeFunction("get", 1) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					return elements[index(arguments.get(0), size)];
+				}
+			};
+		case "set":
+			return new NativeFunction("set", 2) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					elements[index(arguments.get(0), size)] = arguments.get(1);
+					return arguments.get(1);
+				}
+			};
+		case "push":
+			return new NativeFunction("push", 1) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					add(arguments.get(0));
+					return null;
+				}
+			};
+		case "pop":
+			return new NativeFunction("pop", 0) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					if (size == 0) throw new RuntimeError("pop() on an empty list.");
+					Object value = elements[--size];
+					elements[size] = null;//don't keep it alive
+					return value;
+				}
+			};
+		case "len":
+			return new NativeFunction("len", 0) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					return (double)size;
+				}
+			};
+		case "forEach":
+			return new NativeFunction("forEach", 1) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					LoxCallable function = expect(arguments.get(0), LoxCallable.class, "a function");
+					if (function.arity() != 1) throw new RuntimeError("forEach() expects a function with one parameter.");
+					for (int i = 0; i < size; i++) {//a push in fn is seen, the loop reads size every time round
+						function.call(interpreter, Collections.singletonList(elements[i]));
+					}
+					return null;
+				}
+			};
+		default:
+			throw new AssertionError(name);//every name in METHODS has a case
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		appendTo(text, Collections.newSetFromMap(new IdentityHashMap<>()));
+		return text.toString();
+	}
+
+	//a list already being printed further out prints as [...], a list holding itself would otherwise recurse forever.
+	//One held twice but not inside itself prints in full both times
+	void appendTo(StringBuilder text, Set<Object> printing) {
+		if (!printing.add(this)) {
+			text.append("[...]");
+			return;
+		}
+		text.append('[');
+		for (int i = 0; i < size; i++) {
+			if (i > 0) text.append(", ");
+			Interpreter.stringify(elements[i], text, printing);
+		}
+		text.append(']');
+		printing.remove(this);
+	}
+}
@@ -0,0 +1,203 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A hash map from Lox values to Lox values, made by Map().
+ * Open addressing with linear probing in parallel key and value arrays, so no entry objects.
+ * The table is a power of two and grows at half full, removed entries leave a tombstone until the next resize.
+ * Keys are equal when == says they are, so numbers, strings, booleans and nil by value and everything else by identity.
+ *
+ * Methods: get(key), nil when absent, set(key, value), has(key), remove(key), len(), keys(), a list in table order,
+ * and forEach(fn), which calls fn(key, value) for each entry.
+ * Like LoxList a map is not synchronized.
+ */
+class LoxMap implements NativeObject {
+	private static final List<String> METHODS = List.of("get", "set", "has", "remove", "len", "keys", "forEach");
+	private static final Object TOMBSTONE = new Object();//a removed entry, probing continues past it
+
+	private Object[] keys = new Object[8];//null is an empty slot, nil is stored as Environment.NIL
+	private Object[] values = new Object[8];
+	private int size;
+	private int used;//live entries and tombstones, what decides when to grow
+	private NativeFunction[] methods;//bound to this map when first read, then kept, see get
+
+	Object lookup(Object key) {
+		int slot = find(Environment.wrap(key));
+		return slot < 0 ? null : values[slot];
+	}
+
+	void put(Object key, Object value) {
+		key = Environment.wrap(key);
+		int slot = find(key);
+		if (slot >= 0) {
+			values[slot] = value;
+			return;
+		}
+
+		if ((used + 1) * 2 > keys.length) resize();
+		slot = hash(key) & (keys.length - 1);
+		while (keys[slot] != null && keys[slot] != TOMBSTONE) {
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		if (keys[slot] == null) used++;
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+	}
+
+	boolean remove(Object key) {
+		int slot = find(Environment.wrap(key));
+		if (slot < 0) return false;
+		keys[slot] = TOMBSTONE;
+		values[slot] = null;
+		size--;
+		return true;
+	}
+
+	int size() {
+		return size;
+	}
+
+	//the slot holding key, or -1
+	private int find(Object key) {
+		int mask = keys.length - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			Object candidate = keys[slot];
+			if (candidate == null) return -1;
+			if (candidate != TOMBSTONE && candidate.equals(key)) return slot;
+		}
+	}
+
+	//spreads the high bits down, Double hash codes differ mostly in the high bits for small whole numbers
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16) ^ (h >>> 7);
+	}
+
+	private void resize() {
+		Object[] oldKeys = keys;
+		Object[] oldValues = values;
+		int capacity = size * 4 >= oldKeys.length ? oldKeys.length * 2 : oldKeys.length;//only rehash when mostly tombstones
+		keys = new Object[capacity];
+		values = new Object[capacity];
+		size = 0;
+		used = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null && oldKeys[i] != TOMBSTONE) put(Environment.unwrap(oldKeys[i]), oldValues[i]);
+		}
+	}
+
+	LoxList keys() {
+		Object[] result = new Object[size];
+		int n = 0;
+		for (Object key : keys) {
+			if (key != null && key != TOMBSTONE) result[n++] = Environment.unwrap(key);
+		}
+		return new LoxList(result);
+	}
+
+	@Override
+	public Object get(Token name) {
+		int index = METHODS.indexOf(name.lexeme);
+		if (index < 0) throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+		if (methods == null) methods = new NativeFunction[METHODS.size()];
+		if (methods[index] == null) methods[index] = method(name.lexeme);
+		return methods[index];
+	}
+
+	private NativeFunction method(String name) {
+		switch (name) {
+		case "get":
+			return new NativeFunction("get", 1) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					return lookup(arguments.get(0));
+				}
+			};
+		case "set":
+			return new NativeFunction("set", 2) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					put(arguments.get(0), arguments.get(1));
+					return arguments.get(1);
+				}
+			};
+		case "has":
+			return new NativeFunction("has", 1) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					return find(Environment.wrap(arguments.get(0))) >= 0;
+				}
+			};
+		case "remove":
+			return new NativeFunction("remove", 1) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					return remove(arguments.get(0));
+				}
+			};
+		case "len":
+			return new NativeFunction("len", 0) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					return (double)size;
+				}
+			};
+		case "keys":
+			return new NativeFunction("keys", 0) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					return keys();
+				}
+			};
+		case "forEach":
+			return new NativeFunction("forEach", 1) {
+				@Override
+				public Object call(Interpreter interpreter, List<Object> arguments) {
+					LoxCallable function = expect(arguments.get(0), LoxCallable.class, "a function");
+					if (function.arity() != 2) throw new RuntimeError("forEach() expects a function with two parameters.");
+					LoxList entries = keys();//a snapshot, fn may change the map
+					for (int i = 0; i < entries.size(); i++) {
+						Object key = entries.get(i);
+						function.call(interpreter, Arrays.asList(key, lookup(key)));
+					}
+					return null;
+				}
+			};
+		default:
+			throw new AssertionError(name);//every name in METHODS has a case
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		appendTo(text, Collections.newSetFromMap(new IdentityHashMap<>()));
+		return text.toString();
+	}
+
+	//like LoxList.appendTo, a map already being printed further out prints as {...}
+	void appendTo(StringBuilder text, Set<Object> printing) {
+		if (!printing.add(this)) {
+			text.append("{...}");
+			return;
+		}
+		text.append('{');
+		boolean first = true;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] == null || keys[i] == TOMBSTONE) continue;
+			if (!first) text.append(", ");
+			first = false;
+			Interpreter.stringify(Environment.unwrap(keys[i]), text, printing);
+			text.append(": ");
+			Interpreter.stringify(values[i], text, printing);
+		}
+		text.append('}');
+		printing.remove(this);
+	}
+}
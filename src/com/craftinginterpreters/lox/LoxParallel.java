@@ -0,0 +1,143 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * pmap(source, fn) and preduce(source, fn, combine, identity) on the ForkJoin common pool.
+ * The source's index range is split in halves until a piece is small enough, about eight pieces per worker,
+ * so idle workers can steal the unstarted halves of busy ones.
+ * Each piece calls the Lox functions through LoxCallable.call in its own forked Interpreter,
+ * so workers never share a current environment. Closures are shared, see Environment.
+ *
+ * pmap returns a list of fn(element) in source order.
+ * preduce folds every piece from identity with combine(accumulated, fn(element)) and then combines
+ * the pieces' results, left before right. The answer is only well defined when combine is associative
+ * and identity really is its identity, combine(identity, x) == x.
+ */
+class LoxParallel {
+	private LoxParallel() {}
+
+	/**
+	 * What pmap and preduce run over, 0 to n - 1 for a count n or the elements of a list
+	 */
+	static final class Source {
+		final int size;
+		private final LoxList list;//null for a count
+
+		private Source(int size, LoxList list) {
+			this.size = size;
+			this.list = list;
+		}
+
+		Object element(int index) {
+			return list == null ? (double)index : list.get(index);
+		}
+	}
+
+	static Source source(NativeFunction function, Object argument) {
+		if (argument instanceof LoxList) return new Source(((LoxList)argument).size(), (LoxList)argument);
+		double count = function.expect(argument, Double.class, "a count or a list");
+		if (count < 0 || count != Math.floor(count) || count > Integer.MAX_VALUE) {
+			throw new RuntimeError(function.name + "() expects a count that is a whole number, zero or more.");
+		}
+		return new Source((int)count, null);
+	}
+
+	static LoxList map(Interpreter parent, Source source, LoxCallable function) {
+		Object[] results = new Object[source.size];
+		ForkJoinPool.commonPool().invoke(new MapTask(parent, source, function, results, 0, source.size, grain(source.size)));
+		return new LoxList(results);//the pool's invoke returning makes every worker's writes to results visible here
+	}
+
+	static Object reduce(Interpreter parent, Source source, LoxCallable function, LoxCallable combine, Object identity) {
+		if (source.size == 0) return identity;
+		return ForkJoinPool.commonPool().invoke(new ReduceTask(parent, source, function, combine, identity, 0, source.size, grain(source.size)));
+	}
+
+	//the largest piece that isn't split further
+	private static int grain(int size) {
+		return Math.max(1, size / (ForkJoinPool.getCommonPoolParallelism() * 8));
+	}
+
+	@SuppressWarnings("serial")//ForkJoinTask is Serializable, these are never serialized
+	private static final class MapTask extends RecursiveAction {
+		private final Interpreter parent;
+		private final Source source;
+		private final LoxCallable function;
+		private final Object[] results;
+		private final int from, to, grain;
+
+		MapTask(Interpreter parent, Source source, LoxCallable function, Object[] results, int from, int to, int grain) {
+			this.parent = parent;
+			this.source = source;
+			this.function = function;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > grain) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new MapTask(parent, source, function, results, from, middle, grain),
+						new MapTask(parent, source, function, results, middle, to, grain));
+				return;
+			}
+
+			Interpreter interpreter = new Interpreter(parent);
+			for (int i = from; i < to; i++) {
+				results[i] = function.call(interpreter, Collections.singletonList(source.element(i)));
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class ReduceTask extends RecursiveTask<Object> {
+		private final Interpreter parent;
+		private final Source source;
+		private final LoxCallable function, combine;
+		private final Object identity;
+		private final int from, to, grain;
+
+		ReduceTask(Interpreter parent, Source source, LoxCallable function, LoxCallable combine, Object identity, int from, int to, int grain) {
+			this.parent = parent;
+			this.source = source;
+			this.function = function;
+			this.combine = combine;
+			this.identity = identity;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected Object compute() {
+			return compute(new Interpreter(parent));
+		}
+
+		//the right half runs on this thread, in this task's interpreter, so only the forked halves make one of their own,
+		//as many interpreters as there are leaves
+		private Object compute(Interpreter interpreter) {
+			if (to - from > grain) {
+				int middle = (from + to) >>> 1;
+				ReduceTask left = new ReduceTask(parent, source, function, combine, identity, from, middle, grain);
+				left.fork();//runs here after the right half unless another worker steals it first
+				Object right = new ReduceTask(parent, source, function, combine, identity, middle, to, grain).compute(interpreter);
+				return combine.call(interpreter, Arrays.asList(left.join(), right));
+			}
+
+			Object accumulated = identity;
+			for (int i = from; i < to; i++) {
+				Object value = function.call(interpreter, Collections.singletonList(source.element(i)));
+				accumulated = combine.call(interpreter, Arrays.asList(accumulated, value));
+			}
+			return accumulated;
+		}
+	}
+}
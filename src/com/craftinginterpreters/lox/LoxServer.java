@@ -0,0 +1,260 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jlox --server keeps one JVM resident, with its classes loaded and the interpreter JIT compiled,
+ * and runs scripts sent to it over a Unix domain socket. jlox --client is the other end, and client/jlox-client.c
+ * the same without starting a JVM of its own. Measured on one core running fib(20): jlox takes about 650 ms,
+ * jlox --client about 200 ms, 170 ms of it the client's own JVM starting, jlox-client about 15 ms.
+ *
+ * A request is the absolute path of the script. The reply is a series of frames,
+ * a one byte stream id, then for STDOUT and STDERR an int length and that many bytes,
+ * and finally EXIT with the int exit status, the same status runFile would exit with.
+ *
+ * Every request runs in a new Interpreter, so a fresh global environment, printing and reporting errors to its own frames.
+ * Interpreters share nothing, so requests are run concurrently, on a fixed number of threads. Requests that come in while
+ * they are all busy wait in a queue of QUEUED, and one that finds the queue full is turned away with status 75 (EX_TEMPFAIL).
+ * A client has REQUEST_TIMEOUT to send its request, so connections that never do can't hold workers or the accept loop.
+ */
+class LoxServer {
+	static final int EXIT = 0, STDOUT = 1, STDERR = 2;
+	private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+	private static final int QUEUED = 64;
+	private static final long REQUEST_TIMEOUT = 5000;//ms
+	private static final long REFUSAL_TIMEOUT = 500;//ms, a client sends its request as soon as it connects, this only has to drain it
+
+	private static final String WARM_UP =
+			"fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }" +
+			"class Counter { init() { this.count = 0; } add(n) { this.count = this.count + n; return this; } }" +
+			"var counter = Counter();" +
+			"for (var i = 0; i < 200; i = i + 1) { counter.add(fib(10)); }" +
+			"print \"warm \" + \"up\";" +
+			"print counter.count;";
+
+	private LoxServer() {}
+
+	static Path defaultSocket() {
+		return Paths.get(System.getProperty("java.io.tmpdir"), "jlox-" + System.getProperty("user.name") + ".sock");
+	}
+
+	/**
+	 * Serve requests until the process is killed
+	 * @param socket - path of the Unix domain socket to listen on, a stale socket file is replaced
+	 */
+	static void serve(Path socket) throws IOException {
+		warmUp();
+
+		Files.deleteIfExists(socket);
+		try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+			server.bind(UnixDomainSocketAddress.of(socket));
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					Files.deleteIfExists(socket);
+				} catch (IOException ignored) {
+				}
+			}));
+			System.err.println("jlox server listening on " + socket);
+
+			//platform threads, deeply recursive scripts need a full-size stack
+			ThreadPoolExecutor workers = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUED));
+			//turning a request away still reads it, which is done here so the accept loop never waits on a client
+			ThreadPoolExecutor refusals = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUED));
+			for (;;) {
+				SocketChannel accepted = server.accept();
+				try {
+					workers.execute(() -> {
+						try (SocketChannel channel = accepted) {
+							handle(channel);
+						} catch (IOException e) {
+							System.err.println("jlox server: " + e.getMessage());//the client went away, keep serving
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					try {
+						refusals.execute(() -> {
+							try (SocketChannel channel = accepted) {
+								busy(channel);
+							} catch (IOException ignored) {
+							}
+						});
+					} catch (RejectedExecutionException full) {//flooded, drop the connection without a reply
+						try {
+							accepted.close();
+						} catch (IOException ignored) {
+						}
+					}
+				}
+			}
+		}
+	}
+
+	//run the interpreter's hot paths enough times for the JIT to compile them before the first real request
+	private static void warmUp() {
+		PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+		for (int i = 0; i < 50; i++) {
+			Lox.run(WARM_UP, new Interpreter(OutputSink.discard(), new ErrorReporter(discard)));
+		}
+	}
+
+	private static void handle(SocketChannel channel) throws IOException {
+		Path script = readRequest(channel, REQUEST_TIMEOUT);
+
+		DataOutputStream reply = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+		OutputSink out = OutputSink.of(new FrameStream(reply, STDOUT, null));//the sink buffers, so a frame is up to 64 KB
+		PrintStream err = new PrintStream(new FrameStream(reply, STDERR, out), true, StandardCharsets.UTF_8);
+
+		int status;
+		try {
+			status = Lox.runScript(script, new Interpreter(out, new ErrorReporter(err)));
+		} catch (IOException e) {
+			err.println("Could not read " + script + ": " + e.getMessage());
+			status = 66;//EX_NOINPUT
+		} catch (StackOverflowError e) {
+			err.println("Stack overflow.");
+			status = 70;
+		} catch (RuntimeException | Error e) {//a bug in the interpreter, the client still gets its status and the server keeps serving
+			err.println("Internal error: " + e);
+			e.printStackTrace();
+			status = 70;
+		} finally {
+			out.flush();//what the script printed comes before the exit status whatever happened
+		}
+
+		reply.writeByte(EXIT);
+		reply.writeInt(status);
+		reply.flush();
+	}
+
+	//the request is read first, a client still writing it would otherwise find the connection closed
+	private static void busy(SocketChannel channel) throws IOException {
+		readRequest(channel, REFUSAL_TIMEOUT);
+		DataOutputStream reply = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+		byte[] message = "jlox server busy, try again later.\n".getBytes(StandardCharsets.UTF_8);
+		reply.writeByte(STDERR);
+		reply.writeInt(message.length);
+		reply.write(message);
+		reply.writeByte(EXIT);
+		reply.writeInt(75);//EX_TEMPFAIL
+		reply.flush();
+	}
+
+	//the script's path, as writeUTF wrote it. Unix domain channels have no read timeout, so the request is read
+	//without blocking, waiting on a selector until the timeout is up
+	private static Path readRequest(SocketChannel channel, long timeout) throws IOException {
+		ByteBuffer request = ByteBuffer.allocate(2 + 0xFFFF);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		channel.configureBlocking(false);
+		try (Selector selector = Selector.open()) {
+			channel.register(selector, SelectionKey.OP_READ);
+			while (request.position() < 2 || request.position() < 2 + (request.getShort(0) & 0xFFFF)) {
+				long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remaining <= 0) throw new IOException("timed out waiting for a request");
+				selector.select(remaining);
+				selector.selectedKeys().clear();
+				if (channel.read(request) < 0) throw new IOException("the client closed the connection before sending a request");
+			}
+		}
+		channel.configureBlocking(true);//closing the selector deregistered it, the reply is written blocking
+		return Paths.get(new DataInputStream(new ByteArrayInputStream(request.array(), 0, request.position())).readUTF());
+	}
+
+	/**
+	 * The client side: send the script to the server and copy what comes back to this process' stdout and stderr
+	 * @return the script's exit status, or 69 (EX_UNAVAILABLE) when no server is listening
+	 */
+	static int runRemote(Path socket, Path script) throws IOException {
+		SocketChannel channel;
+		try {
+			channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+		} catch (IOException e) {
+			System.err.println("No jlox server listening on " + socket + ".");
+			return 69;
+		}
+
+		try (channel) {
+			DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+			request.writeUTF(script.toAbsolutePath().toString());
+			request.flush();
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			byte[] buffer = new byte[8192];
+			for (;;) {
+				int stream = in.readByte();
+				if (stream == EXIT) {
+					System.out.flush();
+					return in.readInt();
+				}
+
+				OutputStream target = stream == STDERR ? System.err : System.out;
+				int length = in.readInt();
+				while (length > 0) {
+					int n = in.read(buffer, 0, Math.min(length, buffer.length));
+					if (n < 0) throw new IOException("Server closed the connection.");
+					target.write(buffer, 0, n);
+					length -= n;
+				}
+				target.flush();
+			}
+		}
+	}
+
+	/**
+	 * Wraps everything written to it in frames for one stream id
+	 * Anything written to stderr first flushes stdout, so the client sees them in the order the script produced them
+	 */
+	private static class FrameStream extends OutputStream {
+		private final DataOutputStream reply;
+		private final int stream;
+		private final Flushable flushFirst;
+
+		FrameStream(DataOutputStream reply, int stream, Flushable flushFirst) {
+			this.reply = reply;
+			this.stream = stream;
+			this.flushFirst = flushFirst;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) return;
+			if (flushFirst != null) flushFirst.flush();
+			reply.writeByte(stream);
+			reply.writeInt(length);
+			reply.write(bytes, offset, length);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			reply.flush();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * What spawn(fn) returns, a Lox function running on its own virtual thread.
+ * The task runs in a forked Interpreter, which shares globals, output and error reporting with the one that spawned it
+ * but has its own current environment. Closures are shared, not copied, see Environment for what that means.
+ *
+ * join(task) waits for the task and returns the function's return value. If the function hit a runtime error
+ * join raises it in the joining task. A task nobody joins is waited for when the top-level script ends,
+ * and its error, if any, is reported then. A joined task is forgotten, so a loop spawning and joining keeps none of them.
+ */
+class LoxTask {
+	private final Thread thread;
+	private final Set<LoxTask> unjoined;//the interpreter's, this is in it from start until join
+	private Object result;//written by the task's thread before it ends, Thread.join() makes it visible
+	private RuntimeError failure;
+	private volatile boolean joined = false;
+
+	LoxTask(Interpreter parent, LoxCallable function, Set<LoxTask> unjoined) {
+		this.unjoined = unjoined;
+		Interpreter interpreter = new Interpreter(parent);
+		thread = Thread.ofVirtual().unstarted(() -> {
+			try {
+				result = function.call(interpreter, Collections.emptyList());
+			} catch (RuntimeError error) {
+				failure = error;
+			} catch (StackOverflowError error) {
+				failure = new RuntimeError("Stack overflow in task.");//joining reports it at the join
+			}
+		});
+	}
+
+	void start() {
+		unjoined.add(this);
+		thread.start();
+	}
+
+	/**
+	 * Waits for the task to finish
+	 * @return the task function's return value
+	 */
+	Object join() {
+		await();
+		joined = true;
+		unjoined.remove(this);
+		if (failure != null) throw failure;
+		return result;
+	}
+
+	/**
+	 * Waits for the task without raising its error, for the end of the script
+	 * @return the error nobody joined to see, or null
+	 */
+	RuntimeError finish() {
+		await();
+		return joined ? null : failure;
+	}
+
+	private void await() {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeError("Interrupted while joining a task.");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "<task>";
+	}
+}
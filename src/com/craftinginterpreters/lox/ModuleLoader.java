@@ -0,0 +1,150 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compiles the modules import statements name, import "lib/shapes.lox"; with the path relative to the importing file.
+ * A module is scanned, parsed and resolved once and kept, keyed by its absolute path. Every import checks the file's
+ * modification time against the one it was compiled from, so an edited module is compiled again and an unchanged one
+ * never is: scripts sharing a library pay for it once per process, a resident --server process once in all.
+ * With the .loxc cache on, a new process reads modules back from their cache files like it does scripts.
+ *
+ * Compiling is done on a pool of worker threads. Once a program is compiled, prefetchImports starts on every module
+ * it imports, and every module compiled starts on the ones it imports in turn, so independent imports are parsed
+ * in parallel. An import statement only waits for the module it needs.
+ *
+ * The loader only compiles, and what it keeps is only read, so any number of interpreters share it.
+ * Each Interpreter runs a module once, in its globals, see Interpreter.visitImportStmt.
+ */
+class ModuleLoader {
+	static final ModuleLoader DEFAULT = new ModuleLoader(false, false, false);//for interpreters not started by Lox.main
+
+	//daemon threads, compiling a module nobody waits for anymore shouldn't keep the process alive
+	private static final ExecutorService WORKERS = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+		Thread thread = new Thread(task, "lox-module-loader");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * A compiled module, or why there isn't one
+	 */
+	static final class Module {
+		final Path path;
+		final boolean found;//false when the file couldn't be read
+		final List<Stmt> statements;//resolved, null when the module has errors
+		final List<String> errors;//the syntax and resolution errors, as the reporter printed them
+		final boolean usesTasks;//its own code can start tasks, see TaskUse, the modules it imports aren't counted
+
+		private Module(Path path, boolean found, List<Stmt> statements, List<String> errors) {
+			this.path = path;
+			this.found = found;
+			this.statements = statements;
+			this.errors = errors;
+			this.usesTasks = statements != null && TaskUse.direct(statements);
+		}
+	}
+
+	//a compilation, finished or not, and the modification time of the file it was started for
+	private static final class Loading {
+		final FileTime modified;//null when the file couldn't be read
+		final CompletableFuture<Module> module;
+
+		Loading(FileTime modified, CompletableFuture<Module> module) {
+			this.modified = modified;
+			this.module = module;
+		}
+	}
+
+	private final boolean fused;
+	private final boolean diskCache;
+	private final boolean compact;
+	private final ConcurrentHashMap<Path, Loading> modules = new ConcurrentHashMap<>();//by absolute path
+
+	/**
+	 * @param fused - resolve while parsing instead of in a separate Resolver pass
+	 * @param diskCache - load and store modules' .loxc files, see ProgramCache
+	 * @param compact - keep modules as the smaller tree AstCompactor makes
+	 */
+	ModuleLoader(boolean fused, boolean diskCache, boolean compact) {
+		this.fused = fused;
+		this.diskCache = diskCache;
+		this.compact = compact;
+	}
+
+	/**
+	 * @param directory - the directory of the importing file
+	 * @param path - as written in the import statement
+	 * @return the module's absolute path, the key it is cached and run under
+	 */
+	static Path resolve(Path directory, String path) {
+		return directory.resolve(path).toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Starts compiling the modules a program imports, on the workers
+	 * @param directory - the directory of the program's file
+	 * @param statements - the program, imports are only allowed at its top level
+	 */
+	void prefetchImports(Path directory, List<Stmt> statements) {
+		for (Stmt statement : statements) {
+			if (statement instanceof Stmt.Import) prefetch(resolve(directory, ((Stmt.Import)statement).path));
+		}
+	}
+
+	/**
+	 * Compiles a program that isn't a module, an isolate's script, with the same options and .loxc cache modules get
+	 * @return the resolved program, null when it has errors, those went to the reporter
+	 */
+	List<Stmt> compile(byte[] source, ErrorReporter reporter) {
+		List<Stmt> statements = ProgramCache.compile(source, reporter, fused, diskCache);
+		if (statements != null && compact) statements = AstCompactor.compact(statements);
+		return statements;
+	}
+
+	/**
+	 * The module compiled from the file as it is now, waiting for it to be compiled if need be
+	 * @param path - absolute, from resolve
+	 */
+	Module load(Path path) {
+		return prefetch(path).join();
+	}
+
+	private CompletableFuture<Module> prefetch(Path path) {
+		FileTime modified;
+		try {
+			modified = Files.getLastModifiedTime(path);
+		} catch (IOException e) {
+			modified = null;
+		}
+		FileTime current = modified;
+		return modules.compute(path, (key, cached) -> {
+			if (cached != null && Objects.equals(cached.modified, current)) return cached;//compiled or being compiled from this version
+			return new Loading(current, CompletableFuture.supplyAsync(() -> compile(key), WORKERS));
+		}).module;
+	}
+
+	//runs on a worker. The modification time was read before the file is, so a later edit is always seen as one
+	private Module compile(Path path) {
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(path);
+		} catch (IOException e) {
+			return new Module(path, false, null, List.of());
+		}
+
+		ErrorReporter reporter = new ErrorReporter(null);
+		List<Stmt> statements = compile(bytes, reporter);
+		if (statements != null) prefetchImports(path.getParent(), statements);
+		return new Module(path, true, statements, reporter.messages());
+	}
+}
@@ -0,0 +1,52 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Base for the functions the Interpreter defines in the global environment.
+ * A native reports a bad argument by throwing new RuntimeError(message),
+ * the Interpreter attaches the line of the call before reporting it.
+ */
+abstract class NativeFunction implements LoxCallable {
+	final String name;
+	private final int arity;
+
+	NativeFunction(String name, int arity) {
+		this.name = name;
+		this.arity = arity;
+	}
+
+	@Override
+	public int arity() {
+		return arity;
+	}
+
+	@Override
+	public String toString() {
+		return "<native fn>";
+	}
+
+	/**
+	 * Checks that an argument has the Java type the native expects
+	 * @param argument - the value passed in
+	 * @param type - the expected class
+	 * @param what - how the argument is named in the error, "a task" for instance
+	 * @return the argument, cast
+	 */
+	<T> T expect(Object argument, java.lang.Class<T> type, String what) {
+		if (!type.isInstance(argument)) {
+			throw new RuntimeError(name + "() expects " + what + ".");
+		}
+		return type.cast(argument);
+	}
+	
+	/**
+	 * Checks that an argument is a whole number that indexes into something of the given size
+	 * @return the index
+	 */
+	int index(Object argument, int size) {
+		double index = expect(argument, Double.class, "a number index");
+		if (index != Math.floor(index) || index < 0 || index >= size) {
+			throw new RuntimeError(name + "() index " + Interpreter.stringify(index) + " is out of range.");
+		}
+		return (int)index;
+	}
+}
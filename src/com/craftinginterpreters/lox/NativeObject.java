@@ -0,0 +1,13 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * A runtime value implemented in Java whose properties are read through Expr.Get, like a LoxInstance's.
+ * Its methods come back as LoxCallables bound to the object, so list.len() goes through the ordinary Expr.Call path.
+ */
+interface NativeObject {
+	/**
+	 * @param name - the property, its token is used for the error when there is no such property
+	 * @return the property's value, for a method a callable bound to this object
+	 */
+	Object get(Token name);
+}
@@ -0,0 +1,225 @@
+package com.craftinginterpreters.lox;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Where print statements go. Values are formatted straight into a 64 KB buffer, whole numbers digit by digit
+ * and ASCII strings char by char, so printing makes no intermediate strings, and the buffer is written out when full or flushed.
+ * With an async sink full buffers are handed to a writer thread, so the interpreter doesn't wait on the write.
+ * Nothing reaches the stream until a flush: the command line flushes at exit, before the REPL prompt and before reporting an error.
+ *
+ * For embedding: OutputSink.of(stream) writes to any stream, a ByteArrayOutputStream for output kept in memory,
+ * and OutputSink.toFile(path) to a file. Close a sink, or at least flush it, when the script is done.
+ * Printing is synchronized, so tasks printing at once never mix their lines. Write errors are ignored, as PrintStream does.
+ */
+public final class OutputSink implements Flushable, Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+	private final OutputStream out;
+	private final boolean ownsStream;//close out when the sink is closed, only for files the sink opened
+	private final BlockingQueue<Runnable> writes;//null when writing on the printing thread
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int count = 0;
+
+	private OutputSink(OutputStream out, boolean async, boolean ownsStream) {
+		this.out = out;
+		this.ownsStream = ownsStream;
+		if (async) {
+			writes = new ArrayBlockingQueue<>(8);//a printing thread that gets 8 buffers ahead waits for the writer
+			Thread writer = new Thread(() -> {
+				try {
+					for (;;) {
+						writes.take().run();
+					}
+				} catch (InterruptedException e) {
+					//closed
+				}
+			}, "lox-output");
+			writer.setDaemon(true);
+			writer.start();
+		} else {
+			writes = null;
+		}
+	}
+
+	public static OutputSink of(OutputStream out) {
+		return new OutputSink(out, false, false);
+	}
+
+	/**
+	 * @return a sink whose buffers are written to out by a thread of its own
+	 */
+	public static OutputSink async(OutputStream out) {
+		return new OutputSink(out, true, false);
+	}
+
+	public static OutputSink toFile(Path file) throws IOException {
+		return new OutputSink(Files.newOutputStream(file), false, true);
+	}
+
+	/**
+	 * The process' standard output, without System.out's locking and flushing on every line
+	 */
+	static OutputSink stdout(boolean async) {
+		return new OutputSink(new FileOutputStream(FileDescriptor.out), async, false);
+	}
+
+	static OutputSink discard() {
+		return of(OutputStream.nullOutputStream());
+	}
+
+	/**
+	 * Prints a Lox value and a line separator, exactly as Interpreter.stringify formats it
+	 */
+	synchronized void println(Object value) {
+		if (value instanceof Double) {
+			writeNumber((Double)value);
+		} else if (value instanceof String) {
+			writeString((String)value);
+		} else {
+			writeString(Interpreter.stringify(value));
+		}
+		write(NEWLINE, 0, NEWLINE.length);
+	}
+
+	private void writeNumber(double value) {
+		long whole = (long)value;
+		//Double.toString switches to exponents from 10^7 and prints -0.0, leave those to stringify
+		if (whole != value || value >= 1e7 || value <= -1e7 || Double.doubleToRawLongBits(value) == Long.MIN_VALUE) {
+			writeString(Interpreter.stringify(value));
+			return;
+		}
+
+		if (count + 20 > buffer.length) flushBuffer();
+		if (whole < 0) {
+			buffer[count++] = '-';
+			whole = -whole;
+		}
+		int end = count + digits(whole);
+		for (int i = end - 1; i >= count; i--) {
+			buffer[i] = (byte)('0' + whole % 10);
+			whole /= 10;
+		}
+		count = end;
+	}
+
+	private static int digits(long value) {
+		int digits = 1;
+		while (value >= 10) {
+			value /= 10;
+			digits++;
+		}
+		return digits;
+	}
+
+	private void writeString(String text) {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c >= 0x80) {//not ASCII, let the encoder deal with the rest
+				byte[] bytes = text.substring(i).getBytes(StandardCharsets.UTF_8);
+				write(bytes, 0, bytes.length);
+				return;
+			}
+			if (count == buffer.length) flushBuffer();
+			buffer[count++] = (byte)c;
+		}
+	}
+
+	private void write(byte[] bytes, int offset, int length) {
+		while (length > 0) {
+			if (count == buffer.length) flushBuffer();
+			int n = Math.min(length, buffer.length - count);
+			System.arraycopy(bytes, offset, buffer, count, n);
+			count += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	//hands the buffer to the stream, or to the writer thread and starts a new one
+	private void flushBuffer() {
+		if (count == 0) return;
+		if (writes == null) {
+			try {
+				out.write(buffer, 0, count);
+			} catch (IOException ignored) {
+			}
+		} else {
+			byte[] full = buffer;
+			int length = count;
+			enqueue(() -> {
+				try {
+					out.write(full, 0, length);
+				} catch (IOException ignored) {
+				}
+			});
+			buffer = new byte[BUFFER_SIZE];
+		}
+		count = 0;
+	}
+
+	private void enqueue(Runnable write) {
+		try {
+			writes.put(write);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes everything printed so far and flushes the stream, for an async sink waiting for the writer thread to catch up
+	 */
+	@Override
+	public synchronized void flush() {
+		flushBuffer();
+		if (writes == null) {
+			try {
+				out.flush();
+			} catch (IOException ignored) {
+			}
+			return;
+		}
+
+		CountDownLatch written = new CountDownLatch(1);
+		enqueue(() -> {
+			try {
+				out.flush();
+			} catch (IOException ignored) {
+			}
+			written.countDown();
+		});
+		try {
+			written.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Flushes, and closes the stream when the sink opened it. Standard output and streams passed in stay open.
+	 */
+	@Override
+	public synchronized void close() {
+		flush();
+		if (writes != null) enqueue(() -> Thread.currentThread().interrupt());//the writer's take() sees the interrupt and it ends
+		if (ownsStream) {
+			try {
+				out.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+}
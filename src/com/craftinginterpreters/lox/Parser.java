@@ -1,8 +1,13 @@
 package com.craftinginterpreters.lox;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
 
+import com.craftinginterpreters.lox.Resolver.ClassType;
+import com.craftinginterpreters.lox.Resolver.FunctionType;
+
 import static com.craftinginterpreters.lox.TokenType.*;//"static" here allows future usage without having to say TokenType.____
 
 public class Parser {
@@ -12,20 +17,49 @@ public class Parser {
 	
 	private final List<Token> tokens;
 	private int current = 0;//marker for where we are in tokens list
+	private final ErrorReporter reporter;
+	
+	//Fused front end. When resolving, the parser resolves variables as it builds the nodes,
+	//keeping the same scope chain the Resolver would, so the separate Resolver walk can be skipped.
+	//Lox needs no deferral for this: a local is only visible after its declaration, which the parser has always seen by then.
+	private final boolean resolve;//false when parsing only
+	private final List<Map<String, Boolean>> scopes = new ArrayList<>();//unsynchronized stack of scopes, top is the last element
+	private FunctionType currentFunction = FunctionType.NONE;
+	private ClassType currentClass = ClassType.NONE;
 	
 	//constructor
-	Parser(List<Token> tokens) {
+	Parser(List<Token> tokens, ErrorReporter reporter) {
+		this(tokens, reporter, false);
+	}
+	
+	/**
+	 * Constructor for the fused parse-and-resolve front end
+	 * @param tokens
+	 * @param reporter
+	 * @param resolve - set the depth of each variable expression as it is built, as the Resolver would
+	 */
+	Parser(List<Token> tokens, ErrorReporter reporter, boolean resolve) {
 		this.tokens = tokens;
+		this.reporter = reporter;
+		this.resolve = resolve;
 	}
 	
 	//Scanner emits tokens
 	//Parser consumes a collection of tokens and emits syntax trees
 	//Grammar .. program -> declaration* EOF ;
 	List<Stmt> parse() {
+		return parse(null);
+	}
+	
+	/**
+	 * @param ends - when not null, gets the index of the token after each top-level declaration, where the next one starts
+	 */
+	List<Stmt> parse(List<Integer> ends) {
 		List<Stmt> statements = new ArrayList<>();//new instance of ArrayList<>, which implements List<>. Make the variable be of the 
 		//interface type for flexibility
 		while (!isAtEnd()) {//checks if current has run off the end of the list of tokens
 			statements.add(declaration());//build syntax trees (bunch of statements)
+			if (ends != null) ends.add(current);
 		}
 		
 		return statements;
@@ -38,13 +72,20 @@ public class Parser {
 	}
 	
 	private Stmt declaration() {
+		int scopeDepth = scopes.size();//remember the resolution state so a failed declaration can't leave scopes open
+		FunctionType enclosingFunction = currentFunction;
+		ClassType enclosingClass = currentClass;
 		try {
 			if (match(CLASS)) return classDeclaration();
 			if (match(FUN)) return function("function");//"function" is the type
+			if (match(IMPORT)) return importDeclaration();
 			if (match(VAR)) return varDeclaration();
 			return statement();
 		} catch (ParseError error) {
 			synchronize();
+			while (scopes.size() > scopeDepth) endScope();
+			currentFunction = enclosingFunction;
+			currentClass = enclosingClass;
 			return null;
 		}
 	}
@@ -52,21 +93,45 @@ public class Parser {
 
 	private Stmt classDeclaration() {
 		Token name = consume(IDENTIFIER, "Expect class name.");
+		declare(name);
+		define(name);
+		
+		ClassType enclosingClass = currentClass;
+		currentClass = ClassType.CLASS;
 		
 		Expr.Variable superclass = null;
 		if (match(LESS)) {
 			consume(IDENTIFIER, "Expect superclass name.");
 			superclass = new Expr.Variable(previous());
+			if (resolving()) {
+				if (name.lexeme.equals(superclass.name.lexeme)) {
+					reporter.error(superclass.name, "A class can't inherit from itself.");
+				}
+				currentClass = ClassType.SUBCLASS;
+				resolveVariable(superclass);
+			}
 		}
 		
 		consume(LEFT_BRACE, "Expect '{' before class body.");
 		
+		if (superclass != null) {
+			beginScope();//same scope layout the Resolver builds, "super" outside of "this"
+			defineSynthetic("super");
+		}
+		beginScope();
+		defineSynthetic("this");
+		
 		List<Stmt.Function> methods = new ArrayList<>();
 		while (!check(RIGHT_BRACE) && !isAtEnd()) {
 			methods.add(function("method"));//look for a function, tag it as a method and add it to the collection
 		}
 		
 		consume(RIGHT_BRACE, "Expected '}' after class body");//class holds behavior, class body is a list of the class's methods
+		
+		endScope();
+		if (superclass != null) endScope();
+		currentClass = enclosingClass;
+		
 		return new Stmt.Class(name, superclass, methods);
 	}
 
@@ -78,7 +143,12 @@ public class Parser {
 		if (match(PRINT)) return printStatement();
 		if (match(RETURN)) return returnStatement();
 		if (match(WHILE)) return whileStatement();
-		if (match(LEFT_BRACE)) return new Stmt.Block(block());
+		if (match(LEFT_BRACE)) {
+			beginScope();
+			List<Stmt> statements = block();
+			endScope();
+			return new Stmt.Block(statements);
+		}
 		
 		return expressionStatement();
 	}
@@ -95,14 +165,15 @@ public class Parser {
 	private Stmt forStatement() {
 		consume(LEFT_PAREN, "Expect '(' after 'for'.");
 		//create the initializer for the while that we are going to construct and substitute for the for loop
-		Stmt initializer;//referenced as the base class, because it could turn out to be empty, a variable declaration or an expression
-		if (match(SEMICOLON)) {
-			initializer = null;//saw a semicolon right away, the for's initializer is empty
-		} else if (match(VAR)) {
-			initializer = varDeclaration();//see a variable declaration so create the syntax tree node for one
-		} else {//see some expression
-			initializer = expressionStatement();
-		}//already walked past the initializer's ';' when match() above
+		Stmt initializer = null;//referenced as the base class, because it could turn out to be empty, a variable declaration or an expression
+		if (!match(SEMICOLON)) {//saw a semicolon right away, the for's initializer is empty
+			beginScope();//the initializer ends up in the outer block built below, resolve it in that block's scope
+			if (match(VAR)) {
+				initializer = varDeclaration();//see a variable declaration so create the syntax tree node for one
+			} else {//see some expression
+				initializer = expressionStatement();
+			}//already walked past the initializer's ';' when match() above
+		}
 		
 		//create the condition for the while loop
 		//could be null
@@ -116,6 +187,7 @@ public class Parser {
 		Expr increment = null;
 		
 		if (!check(RIGHT_PAREN)) {//didn't see ')' next, so there must be an increment expression
+			beginScope();//the increment runs in the block built below with the body, so resolve both in that block's scope
 			increment = expression();
 		}
 		consume(RIGHT_PAREN, "Expect ')' after all three for loop clauses");
@@ -126,6 +198,7 @@ public class Parser {
 		//Work backwards along the for loop statement and build a set of syntax tree nodes that emulate the functioning of the for loop
 	
 		if (increment != null) {
+			endScope();
 			body = new Stmt.Block(Arrays.asList(body, new Stmt.Expression(increment)));//creates a block containing the current body with the incrementer as its last line
 		}
 		//now add the condition
@@ -134,6 +207,7 @@ public class Parser {
 	
 		//now add the initializer
 		if (initializer != null) {
+			endScope();
 			body = new Stmt.Block(Arrays.asList(initializer, body));//this creates a new, outer block with the initializer at its start, outside of the while loop
 		}
 		
@@ -179,8 +253,15 @@ public class Parser {
 		Token keyword = previous();///the caller of this had matched on RETURN. 
 		//match() advances so we are one past the RETURN token
 		//so looking back one to grab the RETURN keyword token is appropriate
+		if (resolving() && currentFunction == FunctionType.NONE) {
+			reporter.error(keyword, "Can't return from top-level code");
+		}
+		
 		Expr value = null;
 		if (!check(SEMICOLON)) {//check gets the current token and returns whether it matches the one passed in - SEMICOLON
+			if (resolving() && currentFunction == FunctionType.INITIALIZER) {
+				reporter.error(keyword, "Can't return a value from an initializer.");
+			}
 			value = expression();//don't see SEMICOLON so there must be a return value
 		}
 		
@@ -188,13 +269,27 @@ public class Parser {
 		return new Stmt.Return(keyword, value);
 	}
 	
+	//Grammar .. importDecl -> "import" STRING ";"
+	private Stmt importDeclaration() {
+		Token keyword = previous();
+		if (resolving() && !scopes.isEmpty()) {
+			reporter.error(keyword, "Can't import inside a block or function.");
+		}
+		
+		Token path = consume(STRING, "Expect module path string after 'import'.");
+		consume(SEMICOLON, "Expect ';' after module path.");
+		return new Stmt.Import(keyword, (String)path.literal);
+	}
+	
 	private Stmt varDeclaration() {
 		Token name = consume(IDENTIFIER, "Expect variable name.");
+		declare(name);
 		
 		Expr initializer = null;
 		if (match(EQUAL)) {
 			initializer = expression();
 		}
+		define(name);
 		
 		consume(SEMICOLON, "Expect ';' after value.");//check for ; and advance current
 		return new Stmt.Var(name, initializer);
@@ -217,6 +312,17 @@ public class Parser {
 	 */
 	private Stmt.Function function(String kind) {
 		Token name = consume(IDENTIFIER, "Expect " + kind + " name.");
+		FunctionType type = FunctionType.FUNCTION;
+		if (kind.equals("method")) {
+			type = name.lexeme.equals("init") ? FunctionType.INITIALIZER : FunctionType.METHOD;
+		} else {
+			declare(name);//bind the name of the function in the surrounding scope, methods live on the class instead
+			define(name);
+		}
+		FunctionType enclosingFunction = currentFunction;
+		currentFunction = type;
+		beginScope();//the function's inner scope holds the parameters and the body
+		
 		consume(LEFT_PAREN, "Expect '(' after " + kind + " name. ");
 		List<Token> parameters = new ArrayList<>();
 		if (!check(RIGHT_PAREN)) {//didn't hit ')' yet, there must be parameters
@@ -225,7 +331,10 @@ public class Parser {
 					error(peek(), "Can't have more than 255 parameters.");
 				}
 				
-				parameters.add(consume(IDENTIFIER, "Expect parameter name."));//expected parameter because didn't yet see ')'
+				Token parameter = consume(IDENTIFIER, "Expect parameter name.");//expected parameter because didn't yet see ')'
+				declare(parameter);
+				define(parameter);
+				parameters.add(parameter);
 			} while (match(COMMA));//check for ',' after seeing parameter name, if see ',', then look for another parameter
 		}
 		
@@ -233,6 +342,8 @@ public class Parser {
 		
 		consume(LEFT_BRACE, "Expect '{' before " + kind + "body.");//look for start of function body
 		List<Stmt> body = block();//Stmt because could be a list of many different Stmt subclasses
+		endScope();
+		currentFunction = enclosingFunction;
 		return new Stmt.Function(name, parameters, body);
 	}
 
@@ -271,7 +382,9 @@ public class Parser {
 			if (expr instanceof Expr.Variable) {//is it an Expr.Variable? this check lets us know we want to assign to it
 				Token name = ((Expr.Variable)expr).name;//have to cast it because expr from above is an Expr base class type. 
 				//line above converts to/creates an l-value that can be assigned to with a name
-				return new Expr.Assign(name, value);//make the assign of the r-value thing to the l-value thing
+				Expr.Assign assign = new Expr.Assign(name, value);//make the assign of the r-value thing to the l-value thing
+				assign.depth = resolveLocal(name);
+				return assign;
 			} else if (expr instanceof Expr.Get){ 
 				Expr.Get get = (Expr.Get)expr;
 				return new Expr.Set(get.object, get.name, value);
@@ -423,15 +536,33 @@ public class Parser {
 			Token keyword = previous();
 			consume(DOT, "Expect '.' after 'super'.");
 			Token method = consume(IDENTIFIER, "Expect superclass method name.");
-			return new Expr.Super(keyword, method);
+			Expr.Super expr = new Expr.Super(keyword, method);
+			if (resolving()) {
+				if (currentClass == ClassType.NONE) {
+					reporter.error(keyword, "Can't use 'super' outside of a class.");
+				} else if (currentClass != ClassType.SUBCLASS) {
+					reporter.error(keyword, "Can't use 'super' in class with no superclass");
+				}
+				expr.depth = resolveLocal(keyword);
+			}
+			return expr;
 		}
 	
-		if (match(THIS)) return new Expr.This(previous());
-		
+		if (match(THIS)) {
+			Expr.This expr = new Expr.This(previous());
+			if (resolving()) {
+				if (currentClass == ClassType.NONE) {
+					reporter.error(expr.keyword, "Can't use this outside of a class.");
+				}
+				expr.depth = resolveLocal(expr.keyword);
+			}
+			return expr;
+		}
 		
 		if (match(IDENTIFIER)) {
-			return new Expr.Variable(previous());
-			
+			Expr.Variable variable = new Expr.Variable(previous());
+			if (!check(EQUAL)) resolveVariable(variable);//an assignment target is resolved as the Expr.Assign that assignment() builds from it
+			return variable;
 		}
 		
 		if (match(LEFT_PAREN)) {
@@ -486,9 +617,62 @@ public class Parser {
 		return tokens.get(current-1);
 	}
 	
+	//the fused resolution helpers below mirror the Resolver's; they do nothing when only parsing
+	private boolean resolving() {
+		return resolve;
+	}
+	
+	private void beginScope() {
+		if (resolving()) scopes.add(new HashMap<String, Boolean>());
+	}
+	
+	private void endScope() {
+		if (resolving()) scopes.remove(scopes.size() - 1);
+	}
+	
+	private void declare(Token name) {
+		if (scopes.isEmpty()) return;//globals are not resolved
+		
+		Map<String, Boolean> scope = scopes.get(scopes.size() - 1);
+		if (scope.containsKey(name.lexeme)) {
+			reporter.error(name, "Already a variable with this name in this scope.");
+		}
+		scope.put(name.lexeme, false);//declared, not yet ready for use
+	}
+	
+	private void define(Token name) {
+		if (scopes.isEmpty()) return;
+		scopes.get(scopes.size() - 1).put(name.lexeme, true);
+	}
+	
+	//bind "this" or "super" in the innermost scope
+	private void defineSynthetic(String name) {
+		if (scopes.isEmpty()) return;
+		scopes.get(scopes.size() - 1).put(name, true);
+	}
+	
+	private void resolveVariable(Expr.Variable expr) {
+		if (!resolving()) return;
+		if (!scopes.isEmpty() && scopes.get(scopes.size() - 1).get(expr.name.lexeme) == Boolean.FALSE) {//declared but the initializer is still being parsed
+			reporter.error(expr.name, "Can't read local variable in its own initializer.");
+		}
+		
+		expr.depth = resolveLocal(expr.name);
+	}
+	
+	//walk the scopes from innermost out, the number of hops to the defining scope is the depth the interpreter needs
+	private int resolveLocal(Token name) {
+		for (int i = scopes.size() - 1; i >= 0; i--) {
+			if (scopes.get(i).containsKey(name.lexeme)) {
+				return scopes.size() - 1 - i;
+			}
+		}
+		return -1;//a global
+	}
+	
 	//report an error
 	private ParseError error(Token token, String message) {
-		Lox.error(token, message);
+		reporter.error(token, message);
 		return new ParseError();
 	}
 	
@@ -499,7 +683,7 @@ public class Parser {
 			if (previous().type == SEMICOLON) return;//just saw a ';', we know we are at a statement boundary
 			
 			switch(peek().type) {
-			case CLASS: case FOR: case FUN: case IF: case PRINT: case RETURN: case VAR: case WHILE:
+			case CLASS: case FOR: case FUN: case IF: case IMPORT: case PRINT: case RETURN: case VAR: case WHILE:
 				return;
 			case AND:
 				break;
@@ -0,0 +1,186 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * jlox --profile: a sampling profiler for Lox code.
+ * Each interpreter, forks included, keeps a shadow stack of the Lox functions and classes it is inside,
+ * pushed and popped by LoxFunction.call and LoxClass.call. When not profiling the stack is null and that check is all it costs.
+ * A sampler thread copies every busy stack every INTERVAL_MILLIS and counts identical stacks. Sleeping often takes longer
+ * than asked, so each sample is credited with the nanoTime that really passed since the one before, and times are those sums.
+ *
+ * report writes the sample counts in collapsed-stack form, one "frame;frame;frame count" line per distinct stack,
+ * which flamegraph.pl and speedscope read as is, and prints a table of self and total time per function.
+ * A frame is name:line for a function, the line of its declaration, and Name() for creating an instance of a class.
+ */
+class Profiler {
+	static final int INTERVAL_MILLIS = 1;
+
+	private final Queue<WeakReference<ShadowStack>> stacks = new ConcurrentLinkedQueue<>();//weak, forks come and go
+	private final Map<String, long[]> samples = new HashMap<>();//per stack its samples and their nanoseconds, only touched by the sampler thread until it is stopped
+	private final Thread sampler;
+	private volatile boolean running = true;
+
+	Profiler() {
+		sampler = new Thread(this::sample, "lox-profiler");
+		sampler.setDaemon(true);
+		sampler.start();
+	}
+
+	/**
+	 * @param root - the bottom frame of every sample of this stack, <script> or <task> for instance
+	 * @param alwaysBusy - sample it even when no function is running, true for the top-level script
+	 */
+	ShadowStack newStack(String root, boolean alwaysBusy) {
+		ShadowStack stack = new ShadowStack(this, root, alwaysBusy);
+		stacks.add(new WeakReference<>(stack));
+		return stack;
+	}
+
+	/**
+	 * The Lox call stack of one interpreter. Only the interpreter's thread pushes and pops,
+	 * the sampler reads it without locking and may see a frame that was just popped, which is fine for a sample.
+	 */
+	static final class ShadowStack {
+		final Profiler profiler;
+		private final String root;
+		private final boolean alwaysBusy;
+		private volatile Object[] frames = new Object[64];//Stmt.Function or LoxClass
+		private volatile int depth = 0;
+
+		private ShadowStack(Profiler profiler, String root, boolean alwaysBusy) {
+			this.profiler = profiler;
+			this.root = root;
+			this.alwaysBusy = alwaysBusy;
+		}
+
+		void push(Object frame) {
+			Object[] current = frames;
+			if (depth == current.length) {
+				current = Arrays.copyOf(current, depth * 2);
+				frames = current;
+			}
+			current[depth] = frame;
+			depth = depth + 1;//only this thread writes depth, the volatile write publishes the frame
+		}
+
+		void pop() {
+			depth = depth - 1;
+		}
+
+		//null when idle
+		private String snapshot() {
+			int n = depth;
+			if (n == 0 && !alwaysBusy) return null;
+			Object[] current = frames;
+			StringBuilder key = new StringBuilder(root);
+			for (int i = 0; i < n && i < current.length; i++) {
+				key.append(';').append(label(current[i]));
+			}
+			return key.toString();
+		}
+	}
+
+	private static String label(Object frame) {
+		if (frame instanceof Stmt.Function) {
+			Token name = ((Stmt.Function)frame).name;
+			return name.lexeme + ":" + name.line;
+		}
+		if (frame instanceof LoxClass) return ((LoxClass)frame).name + "()";
+		return "?";
+	}
+
+	private void sample() {
+		long last = System.nanoTime();
+		while (running) {
+			try {
+				Thread.sleep(INTERVAL_MILLIS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			long now = System.nanoTime();
+			long elapsed = now - last;
+			last = now;
+			for (Iterator<WeakReference<ShadowStack>> i = stacks.iterator(); i.hasNext(); ) {
+				ShadowStack stack = i.next().get();
+				if (stack == null) {
+					i.remove();
+					continue;
+				}
+				String key = stack.snapshot();
+				if (key != null) {
+					long[] counts = samples.computeIfAbsent(key, k -> new long[2]);
+					counts[0]++;
+					counts[1] += elapsed;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops sampling, writes the collapsed stacks and prints the table
+	 * @param collapsed - the file for the collapsed stacks
+	 * @param table - where the per-function table goes
+	 */
+	void report(Path collapsed, PrintStream table) throws IOException {
+		running = false;
+		sampler.interrupt();
+		try {
+			sampler.join();//after this the samples map is ours
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		Map<String, long[]> sorted = new TreeMap<>(samples);
+		try (Writer out = Files.newBufferedWriter(collapsed, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, long[]> entry : sorted.entrySet()) {
+				out.write(entry.getKey() + " " + entry.getValue()[0] + "\n");
+			}
+		}
+
+		Map<String, long[]> functions = new HashMap<>();//self and total nanoseconds
+		long count = 0, all = 0;
+		for (Map.Entry<String, long[]> entry : sorted.entrySet()) {
+			long nanos = entry.getValue()[1];
+			count += entry.getValue()[0];
+			all += nanos;
+			String[] frames = entry.getKey().split(";");
+			Set<String> seen = new HashSet<>();//a recursive function counts once per sample in its total
+			for (String frame : frames) {
+				if (seen.add(frame)) functions.computeIfAbsent(frame, f -> new long[2])[1] += nanos;
+			}
+			functions.get(frames[frames.length - 1])[0] += nanos;
+		}
+
+		List<Map.Entry<String, long[]>> rows = new ArrayList<>(functions.entrySet());
+		rows.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+		if (count == 0) {
+			table.println("No samples, the script finished within " + INTERVAL_MILLIS + " ms.");
+			return;
+		}
+		table.println(count + " samples every " + INTERVAL_MILLIS + " ms or more, collapsed stacks in " + collapsed);
+		table.printf("%10s %7s %10s %7s  %s%n", "self ms", "self%", "total ms", "total%", "function");
+		for (Map.Entry<String, long[]> row : rows) {
+			long self = row.getValue()[0], total = row.getValue()[1];
+			table.printf("%10d %6.1f%% %10d %6.1f%%  %s%n", self / 1_000_000, 100.0 * self / all,
+					total / 1_000_000, 100.0 * total / all, row.getKey());
+		}
+	}
+}
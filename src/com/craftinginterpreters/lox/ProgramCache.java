@@ -0,0 +1,127 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cache of parsed and resolved programs in .loxc files, so an unchanged script skips the Scanner, Parser and Resolver.
+ * Cache files are named by the source hash and kept in a per-user directory, $XDG_CACHE_HOME/jlox or ~/.cache/jlox,
+ * or the one the jlox.cacheDir system property names. Nothing is ever written next to a script.
+ *
+ * File layout: magic, format number, jlox version, SHA-256 of the source bytes, then the AstWriter output.
+ * A file is only used when all of the header matches, anything else is treated as a miss and rewritten.
+ */
+class ProgramCache {
+	private static final int MAGIC = 0x4C4F5843;//"LOXC"
+	private static final int FORMAT = 2;//bump when AstWriter's encoding changes
+
+	private ProgramCache() {}
+
+	/**
+	 * Scripts and modules both come through here: the program is read back from its cache file when there is a valid
+	 * one, otherwise compiled from source and, if it compiles, stored for next time
+	 * @param useCache - false to only compile, without reading or writing a cache file
+	 * @return the resolved program, null when it has errors, those went to the reporter
+	 */
+	static List<Stmt> compile(byte[] source, ErrorReporter reporter, boolean fused, boolean useCache) {
+		if (!useCache) return Lox.compile(new String(source, Charset.defaultCharset()), reporter, fused);
+		byte[] hash = hash(source);
+		Path cacheFile = cacheFile(hash);
+		List<Stmt> statements = load(cacheFile, hash);
+		if (statements == null) {
+			statements = Lox.compile(new String(source, Charset.defaultCharset()), reporter, fused);
+			if (statements != null) store(cacheFile, hash, statements);
+		}
+		return statements;
+	}
+
+	static byte[] hash(byte[] source) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(source);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);//every Java platform is required to have SHA-256
+		}
+	}
+
+	static Path cacheFile(byte[] hash) {
+		StringBuilder name = new StringBuilder();
+		for (byte b : hash) {
+			name.append(String.format("%02x", b));
+		}
+		return directory().resolve(name.append(".loxc").toString());
+	}
+
+	private static Path directory() {
+		String cacheDir = System.getProperty("jlox.cacheDir");
+		if (cacheDir != null) return Paths.get(cacheDir);
+		String xdg = System.getenv("XDG_CACHE_HOME");
+		if (xdg != null && !xdg.isEmpty()) return Paths.get(xdg, "jlox");
+		return Paths.get(System.getProperty("user.home"), ".cache", "jlox");
+	}
+
+	/**
+	 * @return the cached program, resolved, or null when there is no valid cache file
+	 */
+	static List<Stmt> load(Path cacheFile, byte[] hash) {
+		try (InputStream file = Files.newInputStream(cacheFile)) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT) return null;
+			if (!in.readUTF().equals(Lox.VERSION)) return null;
+
+			byte[] sourceHash = new byte[hash.length];
+			in.readFully(sourceHash);
+			if (!Arrays.equals(sourceHash, hash)) return null;//the script changed since the cache was written
+
+			return new AstReader().read(in);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			return null;//unreadable or corrupt, fall back to compiling from source
+		}
+	}
+
+	/**
+	 * Writes the program to a temporary file and moves it into place, so a concurrent run never sees half a file.
+	 * Failing to write the cache, in a read-only directory for instance, is not an error.
+	 */
+	static void store(Path cacheFile, byte[] hash, List<Stmt> statements) {
+		Path temp = null;
+		try {
+			Path dir = cacheFile.toAbsolutePath().getParent();
+			Files.createDirectories(dir);
+			temp = Files.createTempFile(dir, ".loxc", ".tmp");
+			try (OutputStream file = Files.newOutputStream(temp)) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT);
+				out.writeUTF(Lox.VERSION);
+				out.write(hash);
+				new AstWriter().write(statements, out);
+				out.flush();
+			}
+			Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException ignored) {
+				}
+			}
+		}
+	}
+}
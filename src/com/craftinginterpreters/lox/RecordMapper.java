@@ -0,0 +1,158 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * jlox --map script --input file: calls one Lox function for every line of the input, in parallel.
+ *
+ * The script is run once, its top level should define the function, map by default, which takes the line as a string.
+ * The input is memory-mapped and cut into chunks of about CHUNK_SIZE bytes, each ending at the end of a line.
+ * A pool with a worker per core processes the chunks, every worker thread calling the function in its own
+ * Interpreter forked from the script's, so the script's globals are shared as described in Environment.
+ * What the function returns is printed, one line per record, nil prints nothing, so the function can also filter.
+ * Each chunk's output is collected in memory and written to stdout in input order through one large buffer.
+ * Print statements inside the function go straight to stdout, so they are not ordered, return the output instead.
+ */
+class RecordMapper {
+	private static final int CHUNK_SIZE = 4 << 20;
+	private static final int OUTPUT_BUFFER = 1 << 16;
+
+	private final Interpreter script;
+	private final LoxCallable function;
+	private final ThreadLocal<Interpreter> interpreters;
+
+	private RecordMapper(Interpreter script, LoxCallable function) {
+		this.script = script;
+		this.function = function;
+		this.interpreters = ThreadLocal.withInitial(() -> new Interpreter(script));
+	}
+
+	/**
+	 * @param script - the interpreter that ran the script
+	 * @param input - the records, one per line
+	 * @param functionName - the global function to call for each record
+	 * @return the exit status: 0, 64 when there is no such function, 70 for a runtime error
+	 */
+	static int run(Interpreter script, Path input, String functionName) throws IOException {
+		Object function;
+		try {
+			function = script.globals.get(new Token(TokenType.IDENTIFIER, functionName, null, 0));
+		} catch (RuntimeError error) {
+			function = null;
+		}
+		if (!(function instanceof LoxCallable) || ((LoxCallable)function).arity() != 1) {
+			System.err.println("The script has no function " + functionName + " taking one record.");
+			return 64;
+		}
+
+		script.out.flush();//anything the script's top level printed comes first
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER);
+		try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+			return new RecordMapper(script, (LoxCallable)function).map(channel, out);
+		} finally {
+			out.flush();
+		}
+	}
+
+	private int map(FileChannel channel, OutputStream out) throws IOException {
+		int workers = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+			Thread thread = new Thread(runnable, "lox-map");
+			thread.setDaemon(true);
+			return thread;
+		});
+		Deque<Future<byte[]>> pending = new ArrayDeque<>();//chunks in input order, at most two per worker so memory stays bounded
+		long size = channel.size();
+		long start = 0;
+		try {
+			while (start < size || !pending.isEmpty()) {
+				while (start < size && pending.size() < workers * 2) {
+					long end = lineEnd(channel, start + CHUNK_SIZE, size);
+					long chunkStart = start;
+					pending.add(pool.submit(() -> process(channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, end - chunkStart))));
+					start = end;
+				}
+				out.write(pending.remove().get());
+			}
+			return 0;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeError) {
+				script.reporter.runtimeError((RuntimeError)cause);
+				return 70;
+			}
+			if (cause instanceof IOException) throw (IOException)cause;
+			if (cause instanceof StackOverflowError) {
+				System.err.println("Stack overflow.");
+				return 70;
+			}
+			throw new IllegalStateException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 70;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	//the position just after the first newline at or after from, or the end of the file
+	private static long lineEnd(FileChannel channel, long from, long size) throws IOException {
+		ByteBuffer block = ByteBuffer.allocate(4096);
+		long position = from;
+		while (position < size) {
+			block.clear();
+			int read = channel.read(block, position);
+			if (read <= 0) break;
+			for (int i = 0; i < read; i++) {
+				if (block.get(i) == '\n') return position + i + 1;
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	//runs on a worker, calls the function for each line of the chunk and returns what it printed
+	private byte[] process(MappedByteBuffer chunk) {
+		Interpreter interpreter = interpreters.get();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] line = new byte[256];
+		int limit = chunk.limit();
+		int start = 0;
+		while (start < limit) {
+			int end = start;
+			while (end < limit && chunk.get(end) != '\n') end++;
+			int length = end - start;
+			if (length > 0 && chunk.get(end - 1) == '\r') length--;
+			if (length > line.length) line = new byte[Math.max(length, line.length * 2)];
+			chunk.get(start, line, 0, length);
+
+			String record = new String(line, 0, length, StandardCharsets.UTF_8);
+			Object result = function.call(interpreter, Collections.singletonList(record));
+			if (result != null) {
+				byte[] text = Interpreter.stringify(result).getBytes(StandardCharsets.UTF_8);
+				output.write(text, 0, text.length);
+				output.write('\n');
+			}
+			start = end + 1;
+		}
+		return output.toByteArray();
+	}
+}
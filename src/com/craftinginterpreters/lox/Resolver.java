@@ -22,28 +22,29 @@ import com.craftinginterpreters.lox.Stmt.Class;
 import com.craftinginterpreters.lox.Stmt.Expression;
 import com.craftinginterpreters.lox.Stmt.Function;
 import com.craftinginterpreters.lox.Stmt.If;
+import com.craftinginterpreters.lox.Stmt.Import;
 import com.craftinginterpreters.lox.Stmt.Print;
 import com.craftinginterpreters.lox.Stmt.Return;
 import com.craftinginterpreters.lox.Stmt.Var;
 import com.craftinginterpreters.lox.Stmt.While;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-	private final Interpreter interpreter;
+	private final ErrorReporter reporter;
 	private final Stack<Map<String, Boolean>> scopes = new Stack<>();//A Stack. Each element is a map of String/Boolean key/value pairs
 	private FunctionType currentFunction = FunctionType.NONE;//default value for whether we are currently in a function or not
 	
-	Resolver(Interpreter interpreter) {
-		this.interpreter = interpreter;
+	Resolver(ErrorReporter reporter) {
+		this.reporter = reporter;
 	}
 
-	private enum FunctionType {
+	enum FunctionType {//package-private so the fused front end in Parser can track the same state
 		NONE,
 		FUNCTION,
 		INITIALIZER,
 		METHOD
 	}
 	
-	private enum ClassType {
+	enum ClassType {
 		NONE,
 		CLASS,
 		SUBCLASS
@@ -108,7 +109,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		Map<String, Boolean> scope = scopes.peek();//peek() returns the element at the top of the stack without removing it
 		//we have been resolving merrily along creating scopes and adding them to scopes, we should be "at" or "in" ???? the last one created
 		if (scope.containsKey(name.lexeme)) {
-			Lox.error(name, "Already a variable with this name in this scope.");// can't redeclare a variable already in a scope
+			reporter.error(name, "Already a variable with this name in this scope.");// can't redeclare a variable already in a scope
 		}
 		
 		scope.put(name.lexeme, false);//know here that there are some scopes and that we are "in" one and that the variable
@@ -124,19 +125,18 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	/**
 	 * resolves a variable usage/access
 	 * walks down the stack of scopes until it finds where the variable is defined
-	 * tells the interpreter of the variable resolution and passes the depth
-	 * at which the variable definition can be found so that interpreter
-	 * can retrieve the correct definition for the variable
-	 * @param expr
+	 * the depth at which the variable definition can be found is stored on the expression
+	 * so that the interpreter can retrieve the correct definition for the variable
 	 * @param name
+	 * @return the depth, or -1 when the variable is not in any scope and so is a global
 	 */
-	private void resolveLocal(Expr expr, Token name) {
+	private int resolveLocal(Token name) {
 		for (int i = scopes.size() - 1; i >= 0; i--) {
 			if (scopes.get(i).containsKey(name.lexeme)) {
-				interpreter.resolve(expr, scopes.size() - 1 - i);
-				return;
+				return scopes.size() - 1 - i;
 			}
 		}
+		return -1;
 	}
 	
 	@Override
@@ -179,12 +179,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	public Void visitReturnStmt(Return stmt) {
 		//am I trying to use a return statement outside of a function?
 		if (currentFunction == FunctionType.NONE) {
-			Lox.error(stmt.keyword, "Can't return from top-level code");
+			reporter.error(stmt.keyword, "Can't return from top-level code");
 		}
 		
 		if (stmt.value != null) {//we're using 'return' along with a value
 			if (currentFunction == FunctionType.INITIALIZER) {
-				Lox.error(stmt.keyword, "Can't return a value from an initializer.");
+				reporter.error(stmt.keyword, "Can't return a value from an initializer.");
 			}
 			
 			resolve(stmt.value);
@@ -203,10 +203,19 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visitImportStmt(Import stmt) {
+		//a module runs in the globals, and only once, so importing is only for the top level
+		if (!scopes.isEmpty()) {
+			reporter.error(stmt.keyword, "Can't import inside a block or function.");
+		}
+		return null;
+	}
+
 	@Override
 	public Void visitAssignExpr(Assign expr) {
 		resolve(expr.value);//resolve the value being assigned
-		resolveLocal(expr, expr.name);//resolve the variable being assigned to
+		expr.depth = resolveLocal(expr.name);//resolve the variable being assigned to
 		return null;
 	}
 
@@ -255,10 +264,10 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	@Override
 	public Void visitVariableExpr(Variable expr) {
 		if(!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {//the variable hasn't been defined yet - false
-			Lox.error(expr.name, "Can't read local variable in its own initializer.");
+			reporter.error(expr.name, "Can't read local variable in its own initializer.");
 		}
 		
-		resolveLocal(expr, expr.name);
+		expr.depth = resolveLocal(expr.name);
 		return null;
 	}
 
@@ -275,7 +284,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 		declare(stmt.name);
 		define(stmt.name);
 		if (stmt.superclass != null && stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
-			Lox.error(stmt.superclass.name, "A class can't inherit from itself.");
+			reporter.error(stmt.superclass.name, "A class can't inherit from itself.");
 		}
 		
 		if (stmt.superclass != null) {
@@ -325,22 +334,22 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 	@Override
 	public Void visitSuperExpr(Super expr) {
 		if (currentClass == ClassType.NONE) {
-			Lox.error(expr.keyword, "Can't use 'super' outside of a class.");
+			reporter.error(expr.keyword, "Can't use 'super' outside of a class.");
 		} else if (currentClass != ClassType.SUBCLASS) {
-			Lox.error(expr.keyword, "Can't use 'super' in class with no superclass");
+			reporter.error(expr.keyword, "Can't use 'super' in class with no superclass");
 		}
 		
-		resolveLocal(expr, expr.keyword);
+		expr.depth = resolveLocal(expr.keyword);
 		return null;
 	}
 
 	@Override
 	public Void visitThisExpr(This expr) {
 		if (currentClass == ClassType.NONE) {
-			Lox.error(expr.keyword, "Can't use this outside of a class.");
+			reporter.error(expr.keyword, "Can't use this outside of a class.");
 		}
 		
-		resolveLocal(expr, expr.keyword);
+		expr.depth = resolveLocal(expr.keyword);
 		return null;
 	}
 }
\ No newline at end of file
@@ -4,9 +4,31 @@ public class RuntimeError extends RuntimeException {
 	private static final long serialVersionUID = 1L;
 	
 	final Token token;
+	String module;//the module the error's line is in, null for the script's own lines, see place
+	private boolean placed = false;
 	
 	RuntimeError(Token token, String message) {
 		super(message);
 		this.token = token;
 	}
+	
+	/**
+	 * For native functions, which don't know where they were called from.
+	 * The Interpreter rethrows it with the token of the call.
+	 * @param message
+	 */
+	RuntimeError(String message) {
+		this(null, message);
+	}
+	
+	/**
+	 * Records which module the error's line is in. The first call wins: it comes from the innermost function call
+	 * or module top level the error leaves, which is where its token is
+	 * @param module - the module's path, null for the script itself
+	 */
+	void place(String module) {
+		if (placed) return;
+		placed = true;
+		this.module = module;
+	}
 }
@@ -1,6 +1,7 @@
 package com.craftinginterpreters.lox;
 
 import java.util. ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,9 +11,11 @@ import static com.craftinginterpreters.lox.TokenType.*;
 public class Scanner {
 	private final String source;
 	private final List<Token> tokens = new ArrayList<>();
+	private int[] offsets = new int[64];//where each token starts in the source, for the incremental front end
 	private int start = 0;
 	private int current = 0;
 	private int line = 1;
+	private final ErrorReporter reporter;
 	
 	private static final Map<String, TokenType> keywords;
 	
@@ -25,6 +28,7 @@ public class Scanner {
 		keywords.put("for", FOR);
 		keywords.put("fun", FUN);
 		keywords.put("if", IF);
+		keywords.put("import", IMPORT);
 		keywords.put("nil", NIL);
 		keywords.put("or", OR);
 		keywords.put("print", PRINT);
@@ -36,8 +40,9 @@ public class Scanner {
 		keywords.put("while", WHILE);
 	}
 	
-	Scanner(String source) {
+	Scanner(String source, ErrorReporter reporter) {
 		this.source = source;
+		this.reporter = reporter;
 	}
 	
 	List<Token> scanTokens() {
@@ -48,10 +53,23 @@ public class Scanner {
 			//it will leave current at the start of the next lexeme
 		}
 		
+		addOffset(source.length());
 		tokens.add(new Token(EOF, "", null, line));//add an end of token list indicator to the list
 		return tokens;
 	}
 	
+	/**
+	 * After scanTokens, the offset in the source where each token starts, EOF's is the source's length
+	 */
+	int[] offsets() {
+		return offsets;
+	}
+	
+	private void addOffset(int offset) {
+		if (tokens.size() == offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		offsets[tokens.size()] = offset;
+	}
+	
 	private boolean isAtEnd() {
 		return current >= source.length();
 	}
@@ -116,7 +134,7 @@ public class Scanner {
 			} else if (isAlpha(c)) {//if we got to here then we saw nothing of the above and no digit, is it an alpha character?
 				identifier();
 			} else {
-				Lox.error(line, "Unexpected character.");
+				reporter.error(line, "Unexpected character.");
 			}
 			break;
 		}
@@ -154,7 +172,7 @@ public class Scanner {
 		}
 		
 		if (isAtEnd()) {
-			Lox.error(line, "Unterminated string.");
+			reporter.error(line, "Unterminated string.");
 			return;
 		}
 		
@@ -208,6 +226,7 @@ public class Scanner {
 	
 	private void addToken(TokenType type, Object literal) {
 		String text = source.substring(start, current);
+		addOffset(start);
 		tokens.add(new Token(type, text, literal, line));
 	}	
 }
@@ -19,6 +19,7 @@ abstract class Stmt {
 		R visitPrintStmt(Print stmt);
 		R visitReturnStmt(Return stmt);
 		R visitVarStmt(Var stmt);
+		R visitImportStmt(Import stmt);
  	}
 
 	//Block
@@ -155,4 +156,19 @@ abstract class Stmt {
 		final Token name;
 		final  Expr initializer;
 	}
+
+	//Import
+	static class Import extends Stmt {
+		Import(Token keyword, String path) {
+			this.keyword = keyword;
+			this.path = path;
+		}
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitImportStmt(this);
+		}
+
+		final Token keyword;
+		final  String path;
+	}
 }
@@ -0,0 +1,182 @@
+package com.craftinginterpreters.lox;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Whether a program can run Lox code on more than one thread, so whether its environments and instances need
+ * concurrent maps, see Environment. Only the natives spawn, pmap and preduce do that, and a global is only ever reached
+ * by its name, so a program that never reads a global of one of those names, and imports no module that does, can't.
+ * A local of the same name is something else and doesn't count.
+ */
+class TaskUse implements Stmt.Visitor<Boolean>, Expr.Visitor<Boolean> {
+	private static final Set<String> NATIVES = Set.of("spawn", "pmap", "preduce");
+
+	private TaskUse() {
+	}
+
+	/**
+	 * Waits for the modules the program imports, and the ones they import, to be compiled: a module that can't be
+	 * loaded can't start tasks either, importing it fails
+	 * @param statements - a resolved program
+	 * @param modules - where its imports are compiled
+	 * @param directory - the program's directory, its import paths are relative to it
+	 */
+	static boolean in(List<Stmt> statements, ModuleLoader modules, Path directory) {
+		return in(statements, modules, directory, new HashSet<Path>());
+	}
+
+	/**
+	 * Only the program itself, its imports aren't looked at
+	 */
+	static boolean direct(List<Stmt> statements) {
+		TaskUse check = new TaskUse();
+		for (Stmt statement : statements) {
+			if (check.any(statement)) return true;
+		}
+		return false;
+	}
+
+	private static boolean in(List<Stmt> statements, ModuleLoader modules, Path directory, Set<Path> seen) {
+		if (direct(statements)) return true;
+		for (Stmt statement : statements) {
+			if (!(statement instanceof Stmt.Import)) continue;//imports are only allowed at the top level
+			Path path = ModuleLoader.resolve(directory, ((Stmt.Import)statement).path);
+			if (!seen.add(path)) continue;
+			ModuleLoader.Module module = modules.load(path);
+			if (module.statements != null && (module.usesTasks || in(module.statements, modules, path.getParent(), seen))) return true;
+		}
+		return false;
+	}
+
+	private boolean any(Stmt stmt) {
+		return stmt != null && stmt.accept(this);
+	}
+
+	private boolean any(Expr expr) {
+		return expr != null && expr.accept(this);
+	}
+
+	private boolean anyOf(List<? extends Stmt> statements) {
+		for (Stmt statement : statements) {
+			if (any(statement)) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public Boolean visitBlockStmt(Stmt.Block stmt) {
+		return anyOf(stmt.statements);
+	}
+
+	@Override
+	public Boolean visitClassStmt(Stmt.Class stmt) {
+		return any(stmt.superclass) || anyOf(stmt.methods);
+	}
+
+	@Override
+	public Boolean visitExpressionStmt(Stmt.Expression stmt) {
+		return any(stmt.expression);
+	}
+
+	@Override
+	public Boolean visitFunctionStmt(Stmt.Function stmt) {
+		return anyOf(stmt.body);
+	}
+
+	@Override
+	public Boolean visitIfStmt(Stmt.If stmt) {
+		return any(stmt.condition) || any(stmt.thenBranch) || any(stmt.elseBranch);
+	}
+
+	@Override
+	public Boolean visitWhileStmt(Stmt.While stmt) {
+		return any(stmt.condition) || any(stmt.body);
+	}
+
+	@Override
+	public Boolean visitPrintStmt(Stmt.Print stmt) {
+		return any(stmt.expression);
+	}
+
+	@Override
+	public Boolean visitReturnStmt(Stmt.Return stmt) {
+		return any(stmt.value);
+	}
+
+	@Override
+	public Boolean visitVarStmt(Stmt.Var stmt) {
+		return any(stmt.initializer);
+	}
+
+	@Override
+	public Boolean visitImportStmt(Stmt.Import stmt) {
+		return false;//the module is looked at by in, where it can be found
+	}
+
+	@Override
+	public Boolean visitAssignExpr(Expr.Assign expr) {
+		return any(expr.value);
+	}
+
+	@Override
+	public Boolean visitBinaryExpr(Expr.Binary expr) {
+		return any(expr.left) || any(expr.right);
+	}
+
+	@Override
+	public Boolean visitCallExpr(Expr.Call expr) {
+		if (any(expr.callee)) return true;
+		for (Expr argument : expr.arguments) {
+			if (any(argument)) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public Boolean visitGetExpr(Expr.Get expr) {
+		return any(expr.object);
+	}
+
+	@Override
+	public Boolean visitGroupingExpr(Expr.Grouping expr) {
+		return any(expr.expression);
+	}
+
+	@Override
+	public Boolean visitLiteralExpr(Expr.Literal expr) {
+		return false;
+	}
+
+	@Override
+	public Boolean visitLogicalExpr(Expr.Logical expr) {
+		return any(expr.left) || any(expr.right);
+	}
+
+	@Override
+	public Boolean visitSetExpr(Expr.Set expr) {
+		return any(expr.object) || any(expr.value);
+	}
+
+	@Override
+	public Boolean visitSuperExpr(Expr.Super expr) {
+		return false;
+	}
+
+	@Override
+	public Boolean visitThisExpr(Expr.This expr) {
+		return false;
+	}
+
+	@Override
+	public Boolean visitUnaryExpr(Expr.Unary expr) {
+		return any(expr.right);
+	}
+
+	@Override
+	public Boolean visitVariableExpr(Expr.Variable expr) {
+		return expr.depth < 0 && NATIVES.contains(expr.name.lexeme);
+	}
+}
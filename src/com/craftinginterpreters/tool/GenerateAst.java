@@ -3,9 +3,14 @@ package com.craftinginterpreters.tool;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class GenerateAst {
+	//expression types the Resolver annotates with the depth of the variable they refer to
+	private static final Set<String> RESOLVED = new HashSet<>(Arrays.asList("Assign", "Super", "This", "Variable"));
+	
 	public static void main(String[] args) throws IOException {
 		if (args.length != 1) {
 			System.err.println("Usage: generate_ast <output directory>");
@@ -40,7 +45,8 @@ public class GenerateAst {
 				"While 		:	Expr condition, Stmt body",
 				"Print 		: 	Expr expression",	
 				"Return		: 	Token keyword, Expr value",
-				"Var		: 	Token name, Expr initializer" //this is a statement, it has a side effect - bind a value to a variable
+				"Var		: 	Token name, Expr initializer", //this is a statement, it has a side effect - bind a value to a variable
+				"Import		: 	Token keyword, String path" //run another file's top-level code in the globals, once, see ModuleLoader
 		));
 	}
 	
@@ -117,6 +123,9 @@ public class GenerateAst {
 		for (String field : fields) {
 			writer.println("		final " + field + ";");
 		}
+		if (baseName.equals("Expr") && RESOLVED.contains(className)) {
+			writer.println("		int depth = -1;//set by the Resolver, the number of environments between use and definition, -1 for a global");
+		}
 		
 		writer.println("	}");
 	}